@@ -16,10 +16,10 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
 import com.google.firebase.firestore.FirebaseFirestore;
 
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * <summary>
@@ -61,38 +61,46 @@ public class AdminProductAdapter extends RecyclerView.Adapter<AdminProductAdapte
     @Override
     public AdminProductViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(context).inflate(R.layout.admin_item_product, parent, false);
-        return new AdminProductViewHolder(view);
-    }
-
-    @Override
-    public void onBindViewHolder(@NonNull AdminProductViewHolder holder, int position) {
-        Product product = filteredList.get(position);
-
-        holder.titleTextView.setText(product.getTitle());
-        holder.articleTextView.setText("Артикул: " + product.getArticle());
-
-        DecimalFormatSymbols symbols = new DecimalFormatSymbols();
-        symbols.setGroupingSeparator(' ');
-        DecimalFormat decimalFormat = new DecimalFormat("#,### ₽", symbols);
-        String formattedPrice = decimalFormat.format(product.getPrice());
-        holder.priceTextView.setText("Цена: " + formattedPrice);
-
-        Glide.with(context)
-                .load(product.getImg())
-                .placeholder(android.R.drawable.ic_menu_gallery)
-                .into(holder.productImage);
-
+        AdminProductViewHolder holder = new AdminProductViewHolder(view);
+        // Обработчики создаются один раз на карточку и берут товар по текущей позиции
         holder.editProductButton.setOnClickListener(v -> {
-            if (editProductListener != null) {
+            Product product = productAt(holder);
+            if (product != null && editProductListener != null) {
                 editProductListener.onEditProduct(product);
             }
         });
-
         holder.deleteProductButton.setOnClickListener(v -> {
-            if (deleteProductListener != null) {
+            Product product = productAt(holder);
+            if (product != null && deleteProductListener != null) {
                 deleteProductListener.onDeleteProduct(product);
             }
         });
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull AdminProductViewHolder holder, int position) {
+        Product product = filteredList.get(position);
+
+        holder.titleTextView.setText(product.getTitle());
+        holder.articleTextView.setText(Formatters.articleLabel(product.getArticle()));
+        holder.priceTextView.setText(Formatters.priceLabel(product.getPrice()));
+
+        // Изображение уже загружено в эту карточку — повторный запрос Glide не нужен
+        if (!Objects.equals(holder.boundImage, product.getImg())) {
+            holder.boundImage = product.getImg();
+            Glide.with(context)
+                    .load(product.getImg())
+                    .placeholder(android.R.drawable.ic_menu_gallery)
+                    .into(holder.productImage);
+        }
+    }
+
+    // Товар карточки на момент нажатия; null, если карточка уже не привязана к списку
+    private Product productAt(RecyclerView.ViewHolder holder) {
+        int position = holder.getBindingAdapterPosition();
+        if (position == RecyclerView.NO_POSITION || position >= filteredList.size()) return null;
+        return filteredList.get(position);
     }
 
     @Override
@@ -102,10 +110,12 @@ public class AdminProductAdapter extends RecyclerView.Adapter<AdminProductAdapte
 
     public void filter(String query) {
         filteredList.clear();
-        for (Product product : productList) {
-            if (query.isEmpty() ||
-                    product.getArticle().toLowerCase().contains(query.toLowerCase()) ||
-                    product.getTitle().toLowerCase().contains(query.toLowerCase())) {
+        // Поиск по названию и артикулу выполняет индекс, здесь перебираются только найденные товары
+        ProductRepository repository = ProductRepository.getInstance();
+        BitSet matches = repository.getSearchIndex().search(query);
+        for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+            Product product = repository.getProductAt(slot);
+            if (product != null) {
                 filteredList.add(product);
             }
         }
@@ -117,6 +127,7 @@ public class AdminProductAdapter extends RecyclerView.Adapter<AdminProductAdapte
         ImageView productImage;
         TextView titleTextView, articleTextView, priceTextView;
         Button editProductButton, deleteProductButton;
+        String boundImage;
 
         public AdminProductViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -0,0 +1,33 @@
+package com.example.sorapc;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <summary>
+ * Класс ArticleIds выдаёт стабильные идентификаторы элементов RecyclerView по артикулу товара.
+ * Один и тот же артикул всегда получает один и тот же long, поэтому адаптеры с setHasStableIds(true)
+ * сохраняют ViewHolder товара при обновлениях списка.
+ * Вызывается из главного потока.
+ * </summary>
+ */
+
+public final class ArticleIds {
+
+    private static final Map<String, Long> ids = new HashMap<>();
+    private static long nextId = 1;
+
+    private ArticleIds() {}
+
+    public static long of(String article) {
+        if (article == null) return RecyclerView.NO_ID;
+        Long id = ids.get(article);
+        if (id == null) {
+            id = nextId++;
+            ids.put(article, id);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.sorapc;
+
+import android.os.SystemClock;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <summary>
+ * Класс ArticleLookup находит документ товара по артикулу. Товары хранятся в products/{article},
+ * поэтому вместо запроса whereEqualTo("article") выполняется прямое чтение документа,
+ * а для нескольких артикулов — запросы whereIn по идентификатору документа пачками по WHERE_IN_LIMIT.
+ * Найденные документы (и отсутствие товара) кэшируются в памяти на maxAgeMs; одновременные запросы
+ * одного артикула объединяются. Как индекс ProductRepository класс получает изменения товаров
+ * и сбрасывает их записи, поэтому при активной подписке на товары кэш не отстаёт от Firestore.
+ * Все методы вызываются из главного потока.
+ * </summary>
+ */
+
+public class ArticleLookup implements ProductIndex {
+
+    // Сколько найденный документ считается свежим
+    public static final long DEFAULT_MAX_AGE_MS = 60 * 1000;
+    // Максимальное число значений в одном условии whereIn
+    private static final int WHERE_IN_LIMIT = 30;
+    private static final int MAX_ENTRIES = 256;
+
+    private static ArticleLookup instance;
+
+    private final CollectionReference products;
+    // Документ товара или null, если товара нет; порядок доступа нужен для вытеснения давно не читавшихся
+    private final Map<String, Entry> cache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private final Map<String, Task<DocumentSnapshot>> inFlight = new HashMap<>();
+
+    private ArticleLookup() {
+        this.products = FirebaseFirestore.getInstance().collection("products");
+    }
+
+    public static ArticleLookup getInstance() {
+        if (instance == null) {
+            instance = new ArticleLookup();
+            ProductRepository.getInstance().addIndex(instance);
+        }
+        return instance;
+    }
+
+    // Документ товара; результат null означает, что товара с таким артикулом нет
+    public Task<DocumentSnapshot> get(String article) {
+        return get(article, DEFAULT_MAX_AGE_MS);
+    }
+
+    // maxAgeMs = 0 — всегда читать из Firestore, например перед списанием остатка
+    public Task<DocumentSnapshot> get(String article, long maxAgeMs) {
+        Entry entry = cache.get(article);
+        if (entry != null && entry.isFresh(maxAgeMs)) {
+            return Tasks.forResult(entry.document);
+        }
+        Task<DocumentSnapshot> running = inFlight.get(article);
+        if (running != null && maxAgeMs > 0) {
+            return running;
+        }
+
+        Task<DocumentSnapshot> task = products.document(article).get()
+                .continueWith(read -> read.getResult().exists() ? read.getResult() : null);
+        inFlight.put(article, task);
+        task.addOnCompleteListener(done -> {
+            if (inFlight.get(article) == done) {
+                inFlight.remove(article);
+            }
+            if (done.isSuccessful()) {
+                cache.put(article, new Entry(done.getResult()));
+            }
+        });
+        return task;
+    }
+
+    // Документы нескольких товаров: артикул → документ или null; недостающие читаются пачками whereIn
+    public Task<Map<String, DocumentSnapshot>> getAll(Collection<String> articles) {
+        return getAll(articles, DEFAULT_MAX_AGE_MS);
+    }
+
+    public Task<Map<String, DocumentSnapshot>> getAll(Collection<String> articles, long maxAgeMs) {
+        Map<String, DocumentSnapshot> result = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String article : articles) {
+            Entry entry = cache.get(article);
+            if (entry != null && entry.isFresh(maxAgeMs)) {
+                result.put(article, entry.document);
+            } else {
+                missing.add(article);
+            }
+        }
+        if (missing.isEmpty()) {
+            return Tasks.forResult(result);
+        }
+
+        List<String> pending = new ArrayList<>(missing);
+        List<Task<QuerySnapshot>> reads = new ArrayList<>();
+        for (int start = 0; start < pending.size(); start += WHERE_IN_LIMIT) {
+            List<String> chunk = pending.subList(start, Math.min(start + WHERE_IN_LIMIT, pending.size()));
+            reads.add(products.whereIn(FieldPath.documentId(), new ArrayList<>(chunk)).get());
+        }
+        return Tasks.whenAllSuccess(reads).continueWith(done -> {
+            done.getResult(); // Пробрасывает ошибку любого из запросов
+            for (String article : pending) {
+                result.put(article, null);
+            }
+            for (Task<QuerySnapshot> read : reads) {
+                for (DocumentSnapshot document : read.getResult()) {
+                    result.put(document.getId(), document);
+                }
+            }
+            for (String article : pending) {
+                cache.put(article, new Entry(result.get(article)));
+            }
+            return result;
+        });
+    }
+
+    public void invalidate(String article) {
+        cache.remove(article);
+    }
+
+    // ---- Сброс по изменениям товаров из ProductRepository ----
+
+    @Override
+    public void onProductAdded(int slot, Product product) {
+        cache.remove(product.getArticle());
+    }
+
+    @Override
+    public void onProductModified(int slot, Product oldProduct, Product newProduct) {
+        cache.remove(oldProduct.getArticle());
+        cache.remove(newProduct.getArticle());
+    }
+
+    @Override
+    public void onProductRemoved(int slot, Product product) {
+        cache.remove(product.getArticle());
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+    }
+
+    private static final class Entry {
+        final DocumentSnapshot document;
+        final long loadedAt = SystemClock.elapsedRealtime();
+
+        Entry(DocumentSnapshot document) {
+            this.document = document;
+        }
+
+        boolean isFresh(long maxAgeMs) {
+            return SystemClock.elapsedRealtime() - loadedAt < maxAgeMs;
+        }
+    }
+}
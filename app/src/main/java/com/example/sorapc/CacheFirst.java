@@ -0,0 +1,124 @@
+package com.example.sorapc;
+
+import android.os.SystemClock;
+
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * <summary>
+ * Класс CacheFirst выполняет разовые чтения Firestore сначала из кэша на диске, затем сверяет их с сервером.
+ * Результат из Source.CACHE отдаётся сразу; запрос к Source.SERVER выполняется, только если кэш пуст
+ * или последняя сверка по этому ключу старше maxAgeMs. Каждое чтение с сервера оплачивается,
+ * поэтому повторные открытия экрана в пределах maxAgeMs не читают сервер вовсе.
+ * Ответ сервера передаётся повторно, только если данные отличаются от показанных из кэша.
+ * Вызывается из главного потока, обратные вызовы также приходят в главном потоке.
+ * </summary>
+ */
+
+public final class CacheFirst {
+
+    public static final long DEFAULT_MAX_AGE_MS = 5 * 60 * 1000;
+    // Для неизменяемых данных (идентификатор документа по артикулу): попадания в кэш достаточно
+    public static final long NEVER_STALE = Long.MAX_VALUE;
+
+    public interface Callback<T> {
+        void onResult(T result, boolean fromCache);
+    }
+
+    // Время последней успешной сверки с сервером по ключу запроса
+    private static final Map<String, Long> lastServerRead = new HashMap<>();
+
+    private CacheFirst() {}
+
+    public static void get(Query query, String key, long maxAgeMs,
+                           Callback<QuerySnapshot> callback, OnFailureListener onFailure) {
+        query.get(Source.CACHE)
+                .addOnSuccessListener(cached -> {
+                    boolean hit = !cached.isEmpty();
+                    if (hit) {
+                        callback.onResult(cached, true);
+                        if (!isStale(key, maxAgeMs)) return;
+                    }
+                    query.get(Source.SERVER)
+                            .addOnSuccessListener(fresh -> {
+                                markFresh(key);
+                                if (!hit || !sameDocuments(cached.getDocuments(), fresh.getDocuments())) {
+                                    callback.onResult(fresh, false);
+                                }
+                            })
+                            .addOnFailureListener(e -> {
+                                // Без сети остаёмся с данными из кэша
+                                if (!hit) onFailure.onFailure(e);
+                            });
+                })
+                .addOnFailureListener(e -> query.get(Source.SERVER)
+                        .addOnSuccessListener(fresh -> {
+                            markFresh(key);
+                            callback.onResult(fresh, false);
+                        })
+                        .addOnFailureListener(onFailure));
+    }
+
+    public static void get(DocumentReference reference, long maxAgeMs,
+                           Callback<DocumentSnapshot> callback, OnFailureListener onFailure) {
+        String key = reference.getPath();
+        reference.get(Source.CACHE)
+                .addOnSuccessListener(cached -> {
+                    callback.onResult(cached, true);
+                    if (!isStale(key, maxAgeMs)) return;
+                    reference.get(Source.SERVER)
+                            .addOnSuccessListener(fresh -> {
+                                markFresh(key);
+                                if (!sameDocument(cached, fresh)) {
+                                    callback.onResult(fresh, false);
+                                }
+                            });
+                })
+                // Документа нет в кэше — Firestore сообщает об этом ошибкой
+                .addOnFailureListener(e -> reference.get(Source.SERVER)
+                        .addOnSuccessListener(fresh -> {
+                            markFresh(key);
+                            callback.onResult(fresh, false);
+                        })
+                        .addOnFailureListener(onFailure));
+    }
+
+    // Сбрасывает отметку сверки, например после записи, чтобы следующее чтение сходило на сервер
+    public static void invalidate(String key) {
+        lastServerRead.remove(key);
+    }
+
+    private static boolean isStale(String key, long maxAgeMs) {
+        if (maxAgeMs == NEVER_STALE) return false;
+        Long readAt = lastServerRead.get(key);
+        return readAt == null || SystemClock.elapsedRealtime() - readAt > maxAgeMs;
+    }
+
+    private static void markFresh(String key) {
+        lastServerRead.put(key, SystemClock.elapsedRealtime());
+    }
+
+    private static boolean sameDocuments(List<DocumentSnapshot> left, List<DocumentSnapshot> right) {
+        if (left.size() != right.size()) return false;
+        for (int i = 0; i < left.size(); i++) {
+            if (!sameDocument(left.get(i), right.get(i))) return false;
+        }
+        return true;
+    }
+
+    private static boolean sameDocument(DocumentSnapshot left, DocumentSnapshot right) {
+        return left.getId().equals(right.getId())
+                && left.exists() == right.exists()
+                && Objects.equals(left.getData(), right.getData());
+    }
+}
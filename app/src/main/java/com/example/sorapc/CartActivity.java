@@ -11,17 +11,19 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
 
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * <summary>
@@ -37,6 +39,19 @@ public class CartActivity extends AppCompatActivity {
     private RecyclerView cartRecyclerView;
     private CartAdapter cartAdapter;
     private List<Product> cartList;
+    private final FavoritesIndex favoritesIndex = new FavoritesIndex();
+    private CartStore cartStore;
+    private final CartStore.OnCartChangedListener cartListener = new CartStore.OnCartChangedListener() {
+        @Override
+        public void onCartChanged(Set<String> changedArticles) {
+            CartActivity.this.onCartChanged();
+        }
+
+        @Override
+        public void onCartError(FirebaseFirestoreException error) {
+            Toast.makeText(CartActivity.this, "Ошибка загрузки корзины: " + error.getMessage(), Toast.LENGTH_SHORT).show();
+        }
+    };
     private TextView itemsCountText, totalPriceText, emptyCartText, emptyCartHintText, checkoutHintText;
     private Button checkoutButton;
     private ImageView checkoutHintIcon;
@@ -89,25 +104,32 @@ public class CartActivity extends AppCompatActivity {
         new BottomNavigation(this, R.id.bottom_cart);
     }
 
-    private void loadCartItems() {
-        String userId = auth.getCurrentUser().getUid();
-        db.collection("users").document(userId)
-                .collection("cart")
-                .addSnapshotListener((value, error) -> {
-                    if (error != null) {
-                        Toast.makeText(this, "Ошибка загрузки корзины: " + error.getMessage(), Toast.LENGTH_SHORT).show();
-                        return;
-                    }
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (cartStore != null) {
+            cartStore.removeListener(cartListener);
+        }
+    }
 
-                    cartList.clear();
-                    for (QueryDocumentSnapshot document : value) {
-                        Product product = document.toObject(Product.class);
-                        cartList.add(product);
-                    }
+    private void loadCartItems() {
+        cartStore = CartStore.getInstance();
+        cartStore.addListener(cartListener);
+    }
 
-                    cartAdapter.notifyDataSetChanged();
-                    updateSummary();
-                });
+    // Товары корзины общие для всех экранов, поэтому карточки получают копии с отметкой избранного
+    private void onCartChanged() {
+        List<Product> items = new ArrayList<>(cartStore.getItems().size());
+        for (Product item : cartStore.getItems()) {
+            Product product = new Product(item);
+            product.setFavorite(favoritesIndex.contains(product.getArticle()));
+            items.add(product);
+        }
+        DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new ProductDiffCallback(cartList, items, ProductPayload.CART_QTY));
+        cartList.clear();
+        cartList.addAll(items);
+        diff.dispatchUpdatesTo(cartAdapter);
+        updateSummary();
     }
 
     private void updateSummary() {
@@ -149,15 +171,16 @@ public class CartActivity extends AppCompatActivity {
                         Toast.makeText(this, "Ошибка синхронизации избранного: " + error.getMessage(), Toast.LENGTH_SHORT).show();
                         return;
                     }
-                    List<String> favoriteArticles = new ArrayList<>();
-                    for (QueryDocumentSnapshot document : value) {
-                        Product product = document.toObject(Product.class);
-                        favoriteArticles.add(product.getArticle());
-                    }
-                    for (Product product : cartList) {
-                        product.setFavorite(favoriteArticles.contains(product.getArticle()));
+                    if (!favoritesIndex.apply(value)) return;
+                    // Перерисовываем только сердечки, состояние которых изменилось
+                    for (int i = 0; i < cartList.size(); i++) {
+                        Product product = cartList.get(i);
+                        boolean favorite = favoritesIndex.contains(product.getArticle());
+                        if (product.isFavorite() != favorite) {
+                            product.setFavorite(favorite);
+                            cartAdapter.notifyItemChanged(i, ProductPayload.FAVORITE);
+                        }
                     }
-                    cartAdapter.notifyDataSetChanged();
                 });
     }
 }
\ No newline at end of file
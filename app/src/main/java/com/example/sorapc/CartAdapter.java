@@ -15,9 +15,8 @@ import com.bumptech.glide.Glide;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.FirebaseFirestore;
 
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * <summary>
@@ -33,19 +32,48 @@ public class CartAdapter extends RecyclerView.Adapter<CartAdapter.CartViewHolder
     private List<Product> cartList;
     private FirebaseAuth auth;
     private FirebaseFirestore db;
+    private final CartStore cartStore;
+    private final QuantityStepper quantityStepper;
 
     public CartAdapter(Context context, List<Product> cartList) {
         this.context = context;
         this.cartList = cartList;
         this.auth = FirebaseAuth.getInstance();
         this.db = FirebaseFirestore.getInstance();
+        this.cartStore = CartStore.getInstance();
+        this.quantityStepper = new QuantityStepper(context);
+        setHasStableIds(true);
     }
 
     @NonNull
     @Override
     public CartViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(context).inflate(R.layout.cart_item_product, parent, false);
-        return new CartViewHolder(view);
+        CartViewHolder holder = new CartViewHolder(view);
+        // Обработчики создаются один раз на карточку и берут товар по текущей позиции, а не из привязки
+        holder.favoriteIcon.setOnClickListener(v -> {
+            Product product = productAt(holder);
+            if (product != null) toggleFavorite(holder, product);
+        });
+        holder.binIcon.setOnClickListener(v -> {
+            Product product = productAt(holder);
+            if (product != null) removeFromCart(product);
+        });
+        holder.decreaseQuantityButton.setOnClickListener(v -> {
+            Product product = productAt(holder);
+            if (product != null) decreaseQuantity(product);
+        });
+        holder.increaseQuantityButton.setOnClickListener(v -> {
+            Product product = productAt(holder);
+            if (product != null) increaseQuantity(product);
+        });
+        return holder;
+    }
+
+    // Товар, к которому сейчас привязана карточка; null, если карточка уже убрана из списка
+    private Product productAt(CartViewHolder holder) {
+        int position = holder.getBindingAdapterPosition();
+        return position != RecyclerView.NO_POSITION && position < cartList.size() ? cartList.get(position) : null;
     }
 
     @Override
@@ -53,125 +81,111 @@ public class CartAdapter extends RecyclerView.Adapter<CartAdapter.CartViewHolder
         Product product = cartList.get(position);
 
         holder.titleTextView.setText(product.getTitle());
-        holder.articleTextView.setText("Артикул: " + product.getArticle());
+        holder.articleTextView.setText(Formatters.articleLabel(product.getArticle()));
 
-        DecimalFormatSymbols symbols = new DecimalFormatSymbols();
-        symbols.setGroupingSeparator(' ');
-        DecimalFormat decimalFormat = new DecimalFormat("#,### ₽", symbols);
-        String formattedPrice = decimalFormat.format(product.getPrice() * product.getQuantity());
-        holder.priceTextView.setText("Цена: " + formattedPrice);
+        bindPrice(holder, product);
 
-        Glide.with(context)
-                .load(product.getImg())
-                .placeholder(android.R.drawable.ic_menu_gallery)
-                .into(holder.productImage);
+        // Изображение уже загружено в эту карточку — повторный запрос Glide не нужен
+        if (!Objects.equals(holder.boundImage, product.getImg())) {
+            holder.boundImage = product.getImg();
+            Glide.with(context)
+                    .load(product.getImg())
+                    .placeholder(android.R.drawable.ic_menu_gallery)
+                    .into(holder.productImage);
+        }
 
-        holder.favoriteIcon.setImageResource(product.isFavorite() ? R.drawable.heart_pressed : R.drawable.heart_unpressed);
+        bindFavorite(holder, product);
 
-        holder.quantityText.setText(String.valueOf(product.getQuantity()));
+        holder.quantityText.setText(Formatters.count(product.getQuantity()));
+    }
 
-        holder.favoriteIcon.setOnClickListener(v -> {
-            if (auth.getCurrentUser() == null) {
-                Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
-                return;
-            }
-
-            product.setFavorite(!product.isFavorite());
-            holder.favoriteIcon.setImageResource(product.isFavorite() ? R.drawable.heart_pressed : R.drawable.heart_unpressed);
-
-            String userId = auth.getCurrentUser().getUid();
-            if (product.isFavorite()) {
-                db.collection("users").document(userId)
-                        .collection("favorites").document(product.getArticle())
-                        .set(product)
-                        .addOnFailureListener(e -> Toast.makeText(context, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show());
-            } else {
-                db.collection("users").document(userId)
-                        .collection("favorites").document(product.getArticle())
-                        .delete()
-                        .addOnFailureListener(e -> Toast.makeText(context, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show());
-            }
-        });
+    @Override
+    public void onBindViewHolder(@NonNull CartViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
 
-        holder.binIcon.setOnClickListener(v -> {
-            if (auth.getCurrentUser() == null) {
-                Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
-                return;
-            }
+        // Частичное обновление: меняем только затронутые представления, без Glide и полной перепривязки
+        Product product = cartList.get(position);
+        int changes = ProductPayload.collect(payloads);
+        if (ProductPayload.CART_QTY.in(changes)) {
+            holder.quantityText.setText(Formatters.count(product.getQuantity()));
+        }
+        if (ProductPayload.CART_QTY.in(changes) || ProductPayload.PRICE.in(changes)) {
+            bindPrice(holder, product);
+        }
+        if (ProductPayload.FAVORITE.in(changes)) {
+            bindFavorite(holder, product);
+        }
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return ArticleIds.of(cartList.get(position).getArticle());
+    }
+
+    private void bindPrice(CartViewHolder holder, Product product) {
+        holder.priceTextView.setText(Formatters.priceLabel(product.getPrice() * product.getQuantity()));
+    }
+
+    private void bindFavorite(CartViewHolder holder, Product product) {
+        holder.favoriteIcon.setImageResource(product.isFavorite() ? R.drawable.heart_pressed : R.drawable.heart_unpressed);
+    }
+
+    private void toggleFavorite(CartViewHolder holder, Product product) {
+        if (auth.getCurrentUser() == null) {
+            Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        product.setFavorite(!product.isFavorite());
+        holder.favoriteIcon.setImageResource(product.isFavorite() ? R.drawable.heart_pressed : R.drawable.heart_unpressed);
 
-            String userId = auth.getCurrentUser().getUid();
+        String userId = auth.getCurrentUser().getUid();
+        if (product.isFavorite()) {
+            db.collection("users").document(userId)
+                    .collection("favorites").document(product.getArticle())
+                    .set(ProductSummary.of(product))
+                    .addOnFailureListener(e -> Toast.makeText(context, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+        } else {
             db.collection("users").document(userId)
-                    .collection("cart").document(product.getArticle())
+                    .collection("favorites").document(product.getArticle())
                     .delete()
                     .addOnFailureListener(e -> Toast.makeText(context, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show());
-        });
+        }
+    }
 
-        holder.decreaseQuantityButton.setOnClickListener(v -> {
-            if (auth.getCurrentUser() == null) {
-                Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
-                return;
-            }
-
-            int quantity = product.getQuantity();
-            if (quantity > 1) {
-                quantity--;
-                product.setQuantity(quantity);
-                holder.quantityText.setText(String.valueOf(quantity));
-                String userId = auth.getCurrentUser().getUid();
-                db.collection("users").document(userId)
-                        .collection("cart").document(product.getArticle())
-                        .set(product)
-                        .addOnSuccessListener(aVoid -> {
-                            String updatedPrice = decimalFormat.format(product.getPrice() * product.getQuantity());
-                            holder.priceTextView.setText("Цена: " + updatedPrice);
-                        })
-                        .addOnFailureListener(e -> Toast.makeText(context, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show());
-            }
-        });
+    private void removeFromCart(Product product) {
+        if (auth.getCurrentUser() == null) {
+            Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
+            return;
+        }
 
-        holder.increaseQuantityButton.setOnClickListener(v -> {
-            if (auth.getCurrentUser() == null) {
-                Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
-                return;
-            }
-
-            String userId = auth.getCurrentUser().getUid();
-            // Проверяем доступное количество товара в Firestore
-            db.collection("products")
-                    .whereEqualTo("article", product.getArticle())
-                    .get()
-                    .addOnSuccessListener(queryDocumentSnapshots -> {
-                        if (!queryDocumentSnapshots.isEmpty()) {
-                            Long availableQuantity = queryDocumentSnapshots.getDocuments().get(0).getLong("quantity");
-                            if (availableQuantity != null) {
-                                int currentQuantity = product.getQuantity();
-                                int newQuantity = currentQuantity + 1;
-
-                                if (newQuantity <= availableQuantity) {
-                                    // Если новое количество не превышает доступное, обновляем
-                                    product.setQuantity(newQuantity);
-                                    holder.quantityText.setText(String.valueOf(newQuantity));
-                                    db.collection("users").document(userId)
-                                            .collection("cart").document(product.getArticle())
-                                            .set(product)
-                                            .addOnSuccessListener(aVoid -> {
-                                                String updatedPrice = decimalFormat.format(product.getPrice() * product.getQuantity());
-                                                holder.priceTextView.setText("Цена: " + updatedPrice);
-                                            })
-                                            .addOnFailureListener(e -> Toast.makeText(context, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show());
-                                } else {
-                                    // Если превышает, показываем сообщение
-                                    Toast.makeText(context, "Недостаточно товара на складе", Toast.LENGTH_SHORT).show();
-                                }
-                            } else {
-                                Toast.makeText(context, "Ошибка: не удалось получить доступное количество", Toast.LENGTH_SHORT).show();
-                            }
-                        } else {
-                            Toast.makeText(context, "Товар не найден в базе данных", Toast.LENGTH_SHORT).show();
-                        }
-                    })
-                    .addOnFailureListener(e -> Toast.makeText(context, "Ошибка проверки количества: " + e.getMessage(), Toast.LENGTH_SHORT).show());
-        });
+        cartStore.remove(product.getArticle())
+                .addOnFailureListener(e -> Toast.makeText(context, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+    }
+
+    private void decreaseQuantity(Product product) {
+        if (auth.getCurrentUser() == null) {
+            Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        // Из корзины товар удаляется только кнопкой корзины, степпер не опускается ниже 1
+        if (cartStore.getQuantity(product.getArticle()) > 1) {
+            quantityStepper.decrease(product);
+        }
+    }
+
+    private void increaseQuantity(Product product) {
+        if (auth.getCurrentUser() == null) {
+            Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        // В товаре корзины хранится количество в корзине, поэтому остаток на складе берёт сам степпер
+        quantityStepper.increase(product, QuantityStepper.UNKNOWN_STOCK);
     }
 
     @Override
@@ -182,6 +196,7 @@ public class CartAdapter extends RecyclerView.Adapter<CartAdapter.CartViewHolder
     static class CartViewHolder extends RecyclerView.ViewHolder {
         ImageView productImage, favoriteIcon, binIcon, decreaseQuantityButton, increaseQuantityButton;
         TextView titleTextView, articleTextView, priceTextView, quantityText;
+        String boundImage; // Адрес изображения, уже переданный Glide для этой карточки
 
         public CartViewHolder(@NonNull View itemView) {
             super(itemView);
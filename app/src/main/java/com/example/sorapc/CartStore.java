@@ -0,0 +1,374 @@
+package com.example.sorapc;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * <summary>
+ * Класс CartStore хранит единую для всего приложения корзину текущего пользователя (users/{uid}/cart).
+ * Держит одну подписку Firestore на корзину и раздаёт экранам неизменяемые снимки: артикул → количество
+ * и список товаров корзины в порядке запроса. Подписка создаётся при появлении первого наблюдателя
+ * и снимается, когда наблюдателей не осталось; при смене пользователя корзина загружается заново.
+ * Все изменения корзины выполняются через этот класс. Локальная запись Firestore сразу приходит в подписку,
+ * поэтому экраны обновляются из уведомления, не дожидаясь ответа сервера.
+ * Нажатия степпера количества (stageQuantity) сразу показываются во всех снимках, а в Firestore
+ * записываются одним пакетом, когда нажатия прекратились на STAGE_DELAY_MS.
+ * Все методы вызываются из главного потока.
+ * </summary>
+ */
+
+public class CartStore {
+
+    // Интерфейс для получения изменений корзины; changedArticles — добавленные, удалённые и изменённые артикулы
+    public interface OnCartChangedListener {
+        void onCartChanged(Set<String> changedArticles);
+
+        default void onCartError(FirebaseFirestoreException error) {}
+    }
+
+    // Пауза после последнего нажатия степпера, после которой количества записываются в Firestore
+    private static final long STAGE_DELAY_MS = 400;
+
+    private static CartStore instance;
+
+    private final FirebaseFirestore db;
+    private final FirebaseAuth auth;
+    private final List<OnCartChangedListener> listeners = new ArrayList<>();
+    private final List<Product> itemsInOrder = new ArrayList<>();
+    private Map<String, Integer> quantities = Collections.emptyMap();
+    private Map<String, Product> itemsByArticle = Collections.emptyMap();
+    private List<Product> items = Collections.emptyList();
+    private Map<String, Product> savedItems = Collections.emptyMap(); // Товары корзины без учёта незаписанных нажатий
+    // Количества, выставленные степпером и ещё не подтверждённые записью
+    private final Map<String, Integer> stagedQuantities = new HashMap<>();
+    private final Map<String, Product> stagedProducts = new HashMap<>();
+    private OnFailureListener stagedFailureListener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable flushStaged = this::flushStaged;
+    private ListenerRegistration registration;
+    private String userId; // Пользователь, чья корзина загружена
+    private boolean loaded;
+
+    private CartStore() {
+        this.db = FirebaseFirestore.getInstance();
+        this.auth = FirebaseAuth.getInstance();
+    }
+
+    public static CartStore getInstance() {
+        if (instance == null) {
+            instance = new CartStore();
+        }
+        return instance;
+    }
+
+    public void addListener(OnCartChangedListener listener) {
+        if (listeners.contains(listener)) return;
+        listeners.add(listener);
+        String currentUserId = currentUserId();
+        if (currentUserId != null && !currentUserId.equals(userId)) {
+            // Вошёл другой пользователь — корзина прежнего не должна показываться
+            reset();
+        }
+        if (loaded) {
+            listener.onCartChanged(quantities.keySet());
+        }
+        if (registration == null) {
+            startListening();
+        }
+    }
+
+    public void removeListener(OnCartChangedListener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty() && registration != null) {
+            registration.remove();
+            registration = null;
+        }
+    }
+
+    // Забывает корзину при выходе из аккаунта
+    public void reset() {
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+        itemsInOrder.clear();
+        handler.removeCallbacks(flushStaged);
+        stagedQuantities.clear();
+        stagedProducts.clear();
+        stagedFailureListener = null;
+        savedItems = Collections.emptyMap();
+        quantities = Collections.emptyMap();
+        itemsByArticle = Collections.emptyMap();
+        items = Collections.emptyList();
+        userId = null;
+        loaded = false;
+        if (!listeners.isEmpty()) {
+            startListening();
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // Неизменяемый снимок: артикул → количество в корзине
+    public Map<String, Integer> getQuantities() {
+        return quantities;
+    }
+
+    // Количество товара в корзине; 0, если товара в корзине нет
+    public int getQuantity(String article) {
+        Integer quantity = quantities.get(article);
+        return quantity != null ? quantity : 0;
+    }
+
+    public boolean contains(String article) {
+        return quantities.containsKey(article);
+    }
+
+    // Неизменяемый список товаров корзины; объекты общие для всех экранов, изменять их нельзя
+    public List<Product> getItems() {
+        return items;
+    }
+
+    public Product getItem(String article) {
+        return itemsByArticle.get(article);
+    }
+
+    // ---- Изменение корзины ----
+
+    // Кладёт товар в корзину в количестве 1
+    public Task<Void> add(Product product) {
+        return setQuantity(product, 1);
+    }
+
+    // Записывает количество товара в корзине; 0 и меньше удаляет товар из корзины
+    public Task<Void> setQuantity(Product product, int quantity) {
+        if (quantity <= 0) {
+            return remove(product.getArticle());
+        }
+        CollectionReference cart = cart();
+        if (cart == null) return notSignedIn();
+        unstage(product.getArticle());
+        // Товар каталога хранит остаток на складе, поэтому в корзину пишем копию с количеством в корзине
+        Product cartItem = new Product(product);
+        cartItem.setQuantity(quantity);
+        return cart.document(product.getArticle()).set(ProductSummary.of(cartItem));
+    }
+
+    public Task<Void> remove(String article) {
+        CollectionReference cart = cart();
+        if (cart == null) return notSignedIn();
+        unstage(article);
+        return cart.document(article).delete();
+    }
+
+    // Очищает корзину одним пакетом; если корзина ещё не загружена, состав берётся запросом
+    public Task<Void> clear() {
+        CollectionReference cart = cart();
+        if (cart == null) return notSignedIn();
+        handler.removeCallbacks(flushStaged);
+        stagedQuantities.clear();
+        stagedProducts.clear();
+        if (loaded && currentUserId().equals(userId)) {
+            return deleteAll(cart, savedItems.keySet());
+        }
+        return cart.get().continueWithTask(task -> {
+            Set<String> articles = new HashSet<>();
+            for (DocumentSnapshot document : task.getResult()) {
+                articles.add(document.getId());
+            }
+            return deleteAll(cart, articles);
+        });
+    }
+
+    private Task<Void> deleteAll(CollectionReference cart, Set<String> articles) {
+        WriteBatch batch = db.batch();
+        for (String article : articles) {
+            batch.delete(cart.document(article));
+        }
+        return batch.commit();
+    }
+
+    // Выставляет количество нажатием степпера: снимки и экраны обновляются сразу, а запись в Firestore
+    // откладывается, пока нажатия не прекратятся, и выполняется одним пакетом для всех изменённых товаров
+    public void stageQuantity(Product product, int quantity, OnFailureListener onFailure) {
+        if (currentUserId() == null) {
+            onFailure.onFailure(new IllegalStateException("Пожалуйста, авторизуйтесь"));
+            return;
+        }
+        String article = product.getArticle();
+        stagedQuantities.put(article, Math.max(quantity, 0));
+        stagedProducts.put(article, product);
+        stagedFailureListener = onFailure;
+        publish();
+        notifyChanged(Collections.singleton(article));
+
+        handler.removeCallbacks(flushStaged);
+        handler.postDelayed(flushStaged, STAGE_DELAY_MS);
+    }
+
+    private void flushStaged() {
+        if (stagedQuantities.isEmpty()) return;
+        CollectionReference cart = cart();
+        if (cart == null) return;
+
+        // Существующим товарам меняем только поле quantity, а не перезаписываем документ целиком
+        Map<String, Integer> written = new HashMap<>(stagedQuantities);
+        WriteBatch batch = db.batch();
+        for (Map.Entry<String, Integer> entry : written.entrySet()) {
+            String article = entry.getKey();
+            int quantity = entry.getValue();
+            Product saved = savedItems.get(article);
+            if (quantity <= 0) {
+                if (saved != null) batch.delete(cart.document(article));
+            } else if (saved != null) {
+                if (saved.getQuantity() != quantity) batch.update(cart.document(article), "quantity", quantity);
+            } else {
+                Product cartItem = new Product(stagedProducts.get(article));
+                cartItem.setQuantity(quantity);
+                batch.set(cart.document(article), ProductSummary.of(cartItem));
+            }
+        }
+        OnFailureListener onFailure = stagedFailureListener;
+        batch.commit().addOnCompleteListener(task -> {
+            // Снимаем только те нажатия, после которых количество больше не менялось
+            Set<String> changed = new HashSet<>();
+            for (Map.Entry<String, Integer> entry : written.entrySet()) {
+                if (Objects.equals(stagedQuantities.get(entry.getKey()), entry.getValue())) {
+                    stagedQuantities.remove(entry.getKey());
+                    stagedProducts.remove(entry.getKey());
+                    changed.add(entry.getKey());
+                }
+            }
+            publish();
+            if (!task.isSuccessful()) {
+                // Количества на экранах возвращаются к сохранённым
+                notifyChanged(changed);
+                if (onFailure != null) onFailure.onFailure(task.getException());
+            }
+        });
+    }
+
+    // Отменяет незаписанное нажатие степпера, например когда товар уже оформлен в заказ
+    public void discardStaged(String article) {
+        if (stagedQuantities.containsKey(article)) {
+            unstage(article);
+            publish();
+            notifyChanged(Collections.singleton(article));
+        }
+    }
+
+    private void unstage(String article) {
+        if (stagedQuantities.remove(article) != null) {
+            stagedProducts.remove(article);
+        }
+    }
+
+    // ---- Подписка ----
+
+    private void startListening() {
+        userId = currentUserId();
+        if (userId == null) return;
+        // Первый снимок новой подписки снова приходит целиком как ADDED; прежний снимок остаётся видимым до него
+        itemsInOrder.clear();
+        String listeningUserId = userId;
+        registration = db.collection("users").document(userId)
+                .collection("cart")
+                .addSnapshotListener((value, error) -> {
+                    if (!listeningUserId.equals(userId)) return; // Снимок корзины прежнего пользователя
+                    if (error != null) {
+                        // После ошибки Firestore больше не присылает события, подписку нужно создать заново
+                        registration = null;
+                        for (OnCartChangedListener listener : new ArrayList<>(listeners)) {
+                            listener.onCartError(error);
+                        }
+                        return;
+                    }
+                    if (value == null) return;
+
+                    Set<String> changedArticles = new HashSet<>();
+                    for (DocumentChange change : value.getDocumentChanges()) {
+                        changedArticles.add(change.getDocument().getId());
+                    }
+                    Map<String, Integer> oldQuantities = quantities;
+                    DocumentChangeApplier.apply(value, itemsInOrder, DocumentMappers::product);
+                    publish();
+                    loaded = true;
+                    // После повторной подписки товары, удалённые без нас, приходят не как REMOVED, а просто отсутствуют
+                    for (String article : oldQuantities.keySet()) {
+                        if (!quantities.containsKey(article)) {
+                            changedArticles.add(article);
+                        }
+                    }
+
+                    notifyChanged(changedArticles);
+                });
+    }
+
+    private void notifyChanged(Set<String> changedArticles) {
+        if (changedArticles.isEmpty()) return;
+        Set<String> changed = Collections.unmodifiableSet(changedArticles);
+        for (OnCartChangedListener listener : new ArrayList<>(listeners)) {
+            listener.onCartChanged(changed);
+        }
+    }
+
+    // Собирает неизменяемые снимки для экранов; незаписанные нажатия степпера перекрывают сохранённые количества
+    private void publish() {
+        Map<String, Product> newSavedItems = new HashMap<>();
+        Map<String, Integer> newQuantities = new HashMap<>();
+        Map<String, Product> newItems = new HashMap<>();
+        List<Product> newItemsInOrder = new ArrayList<>(itemsInOrder.size());
+        for (Product item : itemsInOrder) {
+            newSavedItems.put(item.getArticle(), item);
+            Integer staged = stagedQuantities.get(item.getArticle());
+            if (staged != null && staged <= 0) continue;
+            if (staged != null && staged != item.getQuantity()) {
+                item = new Product(item);
+                item.setQuantity(staged);
+            }
+            newQuantities.put(item.getArticle(), item.getQuantity());
+            newItems.put(item.getArticle(), item);
+            newItemsInOrder.add(item);
+        }
+        savedItems = Collections.unmodifiableMap(newSavedItems);
+        quantities = Collections.unmodifiableMap(newQuantities);
+        itemsByArticle = Collections.unmodifiableMap(newItems);
+        items = Collections.unmodifiableList(newItemsInOrder);
+    }
+
+    private CollectionReference cart() {
+        String currentUserId = currentUserId();
+        return currentUserId != null ? db.collection("users").document(currentUserId).collection("cart") : null;
+    }
+
+    private String currentUserId() {
+        return auth.getCurrentUser() != null ? auth.getCurrentUser().getUid() : null;
+    }
+
+    private static Task<Void> notSignedIn() {
+        return Tasks.forException(new IllegalStateException("Пожалуйста, авторизуйтесь"));
+    }
+}
@@ -6,8 +6,10 @@ import android.text.TextWatcher;
 import android.view.View;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
-import android.widget.EditText;
+import android.widget.AutoCompleteTextView;
+import android.widget.Button;
 import android.widget.Spinner;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.GridLayoutManager;
@@ -18,30 +20,46 @@ import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * <summary>
  * Класс CatalogActivity представляет активность для отображения каталога товаров.
  * Он поддерживает фильтрацию, поиск и синхронизацию статуса избранных товаров.
  * Также реализована интеграция с Firebase Firestore для загрузки данных о товарах и категориях.
+ * Без поиска товары нужной категории загружаются постранично (CatalogPager) уже отсортированными на сервере,
+ * полный набор товаров подключается только для поиска и для работы без сети.
  * </summary>
  */
 
 public class CatalogActivity extends AppCompatActivity {
 
-    private EditText searchEditText;
+    private AutoCompleteTextView searchEditText;
     private Spinner priceFilterSpinner, categoryFilterSpinner;
     private RecyclerView productsRecyclerView;
     private ProductAdapter productAdapter;
-    private List<Product> productList;
     private List<String> categoryTitles;
+    private List<String> categoryLabels; // Названия категорий с количеством товаров для Spinner
     private Map<String, String> categoryMap;
     private FirebaseFirestore db;
     private FirebaseAuth auth;
     private String selectedCategory; // Для хранения категории из Intent
+    private ProductRepository productRepository;
+    private CatalogFilterPipeline filterPipeline;
+    private CatalogPager catalogPager;
+    private final FavoritesIndex favoritesIndex = new FavoritesIndex();
+    private boolean categoriesLoaded;
+    private boolean pagingUnavailable; // Сервер недоступен — фильтруем локальную копию товаров
+    private Button facetFilterButton;
+    private Map<SpecField, Set<String>> facetSelection = new EnumMap<>(SpecField.class);
+    private PriceRange priceRange = PriceRange.ANY;
+    private boolean facetDialogPending; // Диалог фильтров откроется, когда загрузятся товары
+    private final ProductRepository.OnProductsChangedListener productsListener = this::onProductsChanged;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -55,24 +73,46 @@ public class CatalogActivity extends AppCompatActivity {
         priceFilterSpinner = findViewById(R.id.price_filter_spinner);
         categoryFilterSpinner = findViewById(R.id.category_filter_spinner);
         productsRecyclerView = findViewById(R.id.products_recycler_view);
+        facetFilterButton = findViewById(R.id.facet_filter_button);
 
-        productList = new ArrayList<>();
         categoryTitles = new ArrayList<>();
+        categoryLabels = new ArrayList<>();
         categoryMap = new HashMap<>();
         categoryTitles.add("Все");
+        categoryLabels.add("Все");
         categoryMap.put("Все", "Все");
-        productAdapter = new ProductAdapter(this, productList);
+        productAdapter = new ProductAdapter(this);
         productsRecyclerView.setLayoutManager(new GridLayoutManager(this, 2));
         productsRecyclerView.setAdapter(productAdapter);
+        // Локальная полнотекстовая база обновляется вместе с общим набором товаров и доступна без сети
+        FullTextIndex fullTextIndex = FullTextIndex.getInstance(this);
+        ProductRepository.getInstance().addIndex(fullTextIndex);
+        filterPipeline = new CatalogFilterPipeline(productAdapter, fullTextIndex, favoritesIndex);
+        catalogPager = new CatalogPager(this, productAdapter, this::mapPagedProduct, new CatalogPager.OnPagingAvailabilityListener() {
+            @Override
+            public void onPagingUnavailable() {
+                pagingUnavailable = true;
+                filterProducts();
+            }
+
+            @Override
+            public void onPagingRestored() {
+                // Сервер снова отвечает — возвращаемся к постраничной загрузке
+                pagingUnavailable = false;
+                filterProducts();
+            }
+        });
+        catalogPager.attach(productsRecyclerView);
 
         List<String> priceSortOptions = new ArrayList<>();
         priceSortOptions.add("По убыванию");
         priceSortOptions.add("По возрастанию");
+        priceSortOptions.add("По релевантности");
         ArrayAdapter<String> priceAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, priceSortOptions);
         priceAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
         priceFilterSpinner.setAdapter(priceAdapter);
 
-        ArrayAdapter<String> categoryAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, categoryTitles);
+        ArrayAdapter<String> categoryAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, categoryLabels);
         categoryAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
         categoryFilterSpinner.setAdapter(categoryAdapter);
 
@@ -80,7 +120,10 @@ public class CatalogActivity extends AppCompatActivity {
         selectedCategory = getIntent().getStringExtra("category");
 
         loadCategories();
-        loadProducts();
+
+        // Подсказки берутся из префиксного дерева общего набора товаров
+        searchEditText.setAdapter(new SuggestionAdapter(this, ProductRepository.getInstance().getSuggestionIndex()));
+        searchEditText.setOnItemClickListener((parent, view, position, id) -> filterProducts());
 
         searchEditText.addTextChangedListener(new TextWatcher() {
             @Override
@@ -88,7 +131,7 @@ public class CatalogActivity extends AppCompatActivity {
 
             @Override
             public void onTextChanged(CharSequence s, int start, int before, int count) {
-                filterProducts();
+                filterProducts(true);
             }
 
             @Override
@@ -115,18 +158,36 @@ public class CatalogActivity extends AppCompatActivity {
             public void onNothingSelected(AdapterView<?> parent) {}
         });
 
+        facetFilterButton.setOnClickListener(v -> showFacetDialog());
+
         View headerView = findViewById(R.id.header);
         new Header(headerView, this);
         new BottomNavigation(this, R.id.bottom_catalog);
 
         listenForFavoritesChanges();
-        listenForProductsChanges();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (productRepository != null) {
+            productRepository.removeListener(productsListener);
+        }
+        if (filterPipeline != null) {
+            filterPipeline.release();
+        }
+        if (catalogPager != null) {
+            catalogPager.release();
+        }
+        if (productAdapter != null) {
+            productAdapter.release();
+        }
     }
 
     private void loadCategories() {
-        db.collection("category")
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
+        // Категории меняются редко: показываем их из кэша, сервер сверяем не чаще раза в DEFAULT_MAX_AGE_MS
+        CacheFirst.get(db.collection("category"), "category", CacheFirst.DEFAULT_MAX_AGE_MS,
+                (queryDocumentSnapshots, fromCache) -> {
                     categoryTitles.clear();
                     categoryMap.clear();
                     categoryTitles.add("Все");
@@ -139,81 +200,59 @@ public class CatalogActivity extends AppCompatActivity {
                             categoryMap.put(categoryTitle, categoryId);
                         }
                     }
-                    ((ArrayAdapter) categoryFilterSpinner.getAdapter()).notifyDataSetChanged();
-
-                    // После загрузки категорий устанавливаем выбранную категорию
-                    if (selectedCategory != null) {
+                    updateCategoryLabels();
+                    Map<String, String> titlesById = new HashMap<>();
+                    for (Map.Entry<String, String> entry : categoryMap.entrySet()) {
+                        titlesById.put(entry.getValue(), entry.getKey());
+                    }
+                    titlesById.remove("Все");
+                    ProductRepository.getInstance().getSuggestionIndex().setCategoryTitles(titlesById);
+
+                    // После первой загрузки категорий устанавливаем выбранную категорию;
+                    // повторный ответ сервера только обновляет список, не сбрасывая выбор пользователя
+                    boolean firstLoad = !categoriesLoaded;
+                    categoriesLoaded = true;
+                    if (firstLoad && selectedCategory != null) {
                         int position = categoryTitles.indexOf(selectedCategory);
                         if (position != -1) {
-                            categoryFilterSpinner.setSelection(position);
+                            categoryFilterSpinner.setSelection(position); // Фильтр запустит обработчик выбора
+                        } else {
+                            filterProducts();
                         }
                     }
-                })
-                .addOnFailureListener(e -> {
-                    // Обработка ошибки
-                });
-    }
-
-    private void loadProducts() {
-        db.collection("products")
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    productList.clear();
-                    for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        Product product = document.toObject(Product.class);
-                        product.setFavorite(false);
-                        productList.add(product);
-                    }
-
-                    syncFavorites();
-                    productAdapter.notifyDataSetChanged();
+                },
+                e -> {
+                    categoriesLoaded = true;
                     filterProducts();
-                })
-                .addOnFailureListener(e -> {
-                    // Обработка ошибки
                 });
     }
 
-    private void listenForProductsChanges() {
-        db.collection("products")
-                .addSnapshotListener((value, error) -> {
-                    if (error != null) {
-                        return;
-                    }
-                    productList.clear();
-                    for (QueryDocumentSnapshot document : value) {
-                        Product product = document.toObject(Product.class);
-                        product.setFavorite(false);
-                        productList.add(product);
-                    }
-                    syncFavorites();
-                    productAdapter.notifyDataSetChanged();
-                    filterProducts();
-                });
+    // Количество товаров берём из индекса категорий, когда набор товаров загружен
+    private void updateCategoryLabels() {
+        CategoryIndex categoryIndex = productRepository != null && productRepository.isLoaded()
+                ? productRepository.getCategoryIndex() : null;
+        categoryLabels.clear();
+        for (String title : categoryTitles) {
+            String categoryId = categoryMap.get(title);
+            if (categoryIndex != null && !"Все".equals(categoryId)) {
+                categoryLabels.add(title + " (" + categoryIndex.count(categoryId) + ")");
+            } else {
+                categoryLabels.add(title);
+            }
+        }
+        ((ArrayAdapter) categoryFilterSpinner.getAdapter()).notifyDataSetChanged();
     }
 
-    private void syncFavorites() {
-        if (auth.getCurrentUser() == null) return;
-        String userId = auth.getCurrentUser().getUid();
-        db.collection("users").document(userId)
-                .collection("favorites")
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<String> favoriteArticles = new ArrayList<>();
-                    for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        Product product = document.toObject(Product.class);
-                        favoriteArticles.add(product.getArticle());
-                    }
-                    for (Product product : productList) {
-                        product.setFavorite(favoriteArticles.contains(product.getArticle()));
-                    }
-                    productAdapter.notifyDataSetChanged();
-                })
-                .addOnFailureListener(e -> {
-                    // Обработка ошибки
-                });
+    private void onProductsChanged(List<Product> products) {
+        updateCategoryLabels();
+        if (facetDialogPending) {
+            facetDialogPending = false;
+            showFacetDialog();
+        }
+        filterProducts();
     }
 
+    // Избранное читается одной подпиской: первый снимок заполняет индекс, следующие приносят только изменения
     private void listenForFavoritesChanges() {
         if (auth.getCurrentUser() == null) return;
         String userId = auth.getCurrentUser().getUid();
@@ -223,23 +262,102 @@ public class CatalogActivity extends AppCompatActivity {
                     if (error != null) {
                         return;
                     }
-                    List<String> favoriteArticles = new ArrayList<>();
-                    for (QueryDocumentSnapshot document : value) {
-                        Product product = document.toObject(Product.class);
-                        favoriteArticles.add(product.getArticle());
-                    }
-                    for (Product product : productList) {
-                        product.setFavorite(favoriteArticles.contains(product.getArticle()));
+                    if (favoritesIndex.apply(value)) {
+                        applyFavorites();
                     }
-                    productAdapter.notifyDataSetChanged();
                 });
     }
 
+    // Отметка ставится на копии товаров; DiffUtil перерисовывает только сердечки, состояние которых изменилось
+    private void applyFavorites() {
+        if (catalogPager.isActive()) {
+            catalogPager.replaceProducts(product -> product.withFavorite(favoritesIndex.contains(product.getArticle())));
+        } else {
+            filterProducts();
+        }
+    }
+
+    private Product mapPagedProduct(QueryDocumentSnapshot document) {
+        Product product = DocumentMappers.productSummary(document).toProduct();
+        product.setFavorite(favoritesIndex.contains(product.getArticle()));
+        return product;
+    }
+
+    // Полный набор товаров нужен только для поиска и фильтров, поэтому подписываемся на него при первом обращении
+    private void subscribeToProducts() {
+        if (productRepository == null) {
+            productRepository = ProductRepository.getInstance();
+            productRepository.addListener(productsListener);
+        }
+    }
+
     private void filterProducts() {
+        filterProducts(false);
+    }
+
+    private boolean hasFacetSelection() {
+        for (Set<String> values : facetSelection.values()) {
+            if (!values.isEmpty()) return true;
+        }
+        return false;
+    }
+
+    // Значения характеристик и количества берутся из индекса по всему набору товаров
+    private void showFacetDialog() {
+        subscribeToProducts();
+        if (!productRepository.isLoaded()) {
+            facetDialogPending = true;
+            Toast.makeText(this, "Загрузка характеристик...", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        String query = searchEditText.getText().toString().trim();
+        int categoryPosition = categoryFilterSpinner.getSelectedItemPosition();
+        String categoryTitle = categoryPosition >= 0 && categoryPosition < categoryTitles.size() ? categoryTitles.get(categoryPosition) : "Все";
+        String categoryId = categoryMap.get(categoryTitle);
+        BitSet candidates = productRepository.search(query);
+        if (categoryId != null && !categoryId.equals("Все")) {
+            candidates.and(productRepository.getCategoryIndex().bucket(categoryId));
+        }
+
+        new FacetFilterDialog(this, productRepository.getFacetIndex(), productRepository.getPriceIndex(), candidates,
+                facetSelection, priceRange, (selection, selectedPriceRange) -> {
+            facetSelection = selection;
+            priceRange = selectedPriceRange;
+            int selectedCount = priceRange.isAny() ? 0 : 1;
+            for (Set<String> values : selection.values()) {
+                selectedCount += values.size();
+            }
+            facetFilterButton.setText(selectedCount > 0 ? "Фильтры (" + selectedCount + ")" : "Фильтры");
+            filterProducts();
+        }).show();
+    }
+
+    // Фильтрация и сортировка выполняются в фоне; ввод в поле поиска дополнительно откладывается до паузы
+    private void filterProducts(boolean debounce) {
         String query = searchEditText.getText().toString().trim();
         String priceSort = priceFilterSpinner.getSelectedItem() != null ? priceFilterSpinner.getSelectedItem().toString() : "По убыванию";
-        String categoryTitle = categoryFilterSpinner.getSelectedItem() != null ? categoryFilterSpinner.getSelectedItem().toString() : "Все";
+        int categoryPosition = categoryFilterSpinner.getSelectedItemPosition();
+        String categoryTitle = categoryPosition >= 0 && categoryPosition < categoryTitles.size() ? categoryTitles.get(categoryPosition) : "Все";
         String categoryId = categoryMap.get(categoryTitle);
-        productAdapter.filter(query, priceSort, categoryId);
+
+        // Категорию из Intent узнаём только после загрузки списка категорий, до этого не загружаем весь каталог
+        if (selectedCategory != null && !categoriesLoaded) return;
+
+        if (query.isEmpty() && !hasFacetSelection() && !pagingUnavailable) {
+            // Без поиска категория и сортировка выполняются запросом к Firestore, каталог листается постранично
+            filterPipeline.cancel();
+            String pagedCategory = categoryId == null || categoryId.equals("Все") ? null : categoryId;
+            catalogPager.start(pagedCategory, !priceSort.equals("По возрастанию"), priceRange);
+            return;
+        }
+
+        catalogPager.stop();
+        subscribeToProducts();
+        if (debounce) {
+            filterPipeline.requestDebounced(query, priceSort, categoryId, facetSelection, priceRange);
+        } else {
+            filterPipeline.request(query, priceSort, categoryId, facetSelection, priceRange);
+        }
     }
 }
\ No newline at end of file
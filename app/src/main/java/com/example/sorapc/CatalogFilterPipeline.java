@@ -0,0 +1,179 @@
+package com.example.sorapc;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <summary>
+ * Класс CatalogFilterPipeline выполняет фильтрацию и сортировку каталога вне главного потока.
+ * Запросы откладываются на короткую паузу (debounce), чтобы серия нажатий клавиш давала один пересчёт,
+ * а устаревшие задачи отбрасываются по номеру поколения.
+ * Фильтр, сортировка и DiffUtil считаются в фоновом потоке, главный поток только применяет готовый результат к ProductAdapter.
+ * Сортировка по цене не выполняется: подходящие товары собираются обходом PriceIndex в нужном порядке
+ * сразу в пределах выбранного диапазона цен.
+ * При сортировке по релевантности порядок задаёт BM25 из FullTextIndex, а пока общий набор товаров
+ * ещё не загружен (холодный старт, нет сети), результаты берутся прямо из локальной базы FullTextIndex.
+ * Отметка избранного ставится на копии товара (Product.withFavorite), общие экземпляры ProductRepository не меняются.
+ * </summary>
+ */
+
+public class CatalogFilterPipeline {
+
+    private static final long DEBOUNCE_MS = 150;
+    private static final int OFFLINE_LIMIT = 100;
+
+    private final ProductAdapter adapter;
+    private final FullTextIndex fullTextIndex;
+    private final FavoritesIndex favoritesIndex;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Runnable startPending = this::startPending;
+
+    private volatile int generation;
+    private String pendingQuery = "";
+    private String pendingPriceSort = "По убыванию";
+    private String pendingCategory = "Все";
+    private Map<SpecField, Set<String>> pendingFacets = Collections.emptyMap();
+    private PriceRange pendingPriceRange = PriceRange.ANY;
+    private BitSet pendingFavorites = new BitSet();
+
+    public CatalogFilterPipeline(ProductAdapter adapter, FullTextIndex fullTextIndex, FavoritesIndex favoritesIndex) {
+        this.adapter = adapter;
+        this.fullTextIndex = fullTextIndex;
+        this.favoritesIndex = favoritesIndex;
+    }
+
+    // Запрос от поля поиска: ждём паузы в наборе текста
+    public void requestDebounced(String query, String priceSort, String category, Map<SpecField, Set<String>> facets,
+                                 PriceRange priceRange) {
+        schedule(query, priceSort, category, facets, priceRange, DEBOUNCE_MS);
+    }
+
+    // Запрос от спиннеров и новых данных: выполняем без задержки
+    public void request(String query, String priceSort, String category, Map<SpecField, Set<String>> facets,
+                        PriceRange priceRange) {
+        schedule(query, priceSort, category, facets, priceRange, 0);
+    }
+
+    // Отменяет отложенный и выполняющийся запрос, например при переходе каталога в постраничный режим
+    public void cancel() {
+        generation++;
+        mainHandler.removeCallbacks(startPending);
+    }
+
+    public void release() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    private void schedule(String query, String priceSort, String category, Map<SpecField, Set<String>> facets,
+                          PriceRange priceRange, long delayMs) {
+        pendingQuery = query;
+        pendingPriceSort = priceSort;
+        pendingCategory = category != null ? category : "Все";
+        // Копия выбора, чтобы фоновая задача не видела последующих изменений
+        Map<SpecField, Set<String>> facetsCopy = new EnumMap<>(SpecField.class);
+        for (Map.Entry<SpecField, Set<String>> entry : facets.entrySet()) {
+            facetsCopy.put(entry.getKey(), new HashSet<>(entry.getValue()));
+        }
+        pendingFacets = facetsCopy;
+        pendingPriceRange = priceRange;
+        pendingFavorites = favoritesIndex.toBitSet();
+        generation++; // Задача, запущенная раньше, уже не опубликует результат
+        mainHandler.removeCallbacks(startPending);
+        if (delayMs > 0) {
+            mainHandler.postDelayed(startPending, delayMs);
+        } else {
+            startPending.run();
+        }
+    }
+
+    private void startPending() {
+        if (executor.isShutdown()) return;
+        int jobGeneration = generation;
+        String query = pendingQuery;
+        String priceSort = pendingPriceSort;
+        String category = pendingCategory;
+        Map<SpecField, Set<String>> facets = pendingFacets;
+        PriceRange priceRange = pendingPriceRange;
+        BitSet favorites = pendingFavorites;
+        executor.execute(() -> {
+            if (jobGeneration != generation) return;
+            List<Product> oldList = adapter.getCurrentList();
+            List<Product> newList = filter(query, priceSort, category, facets, priceRange, favorites);
+            if (jobGeneration != generation) return;
+            DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new ProductDiffCallback(oldList, newList));
+            mainHandler.post(() -> {
+                if (jobGeneration != generation) return;
+                if (oldList != adapter.getCurrentList()) {
+                    // Список успели заменить, пока считался diff — пересчитываем от актуального
+                    startPending();
+                    return;
+                }
+                adapter.submit(newList, diff);
+            });
+        });
+    }
+
+    private List<Product> filter(String query, String priceSort, String category, Map<SpecField, Set<String>> facets,
+                                 PriceRange priceRange, BitSet favorites) {
+        boolean byRelevance = priceSort.equals("По релевантности") && !query.isEmpty() && !SpecQuery.looksLikeQuery(query);
+        boolean descending = !priceSort.equals("По возрастанию");
+        ProductRepository repository = ProductRepository.getInstance();
+        if (!repository.isLoaded()) {
+            // Товары ещё не загружены — ищем по локальной базе, характеристики в ней не фильтруются
+            List<Product> found = fullTextIndex.search(query, category.equals("Все") ? null : category,
+                    priceRange, byRelevance, descending, OFFLINE_LIMIT);
+            for (int i = 0; i < found.size(); i++) {
+                found.set(i, withFavorite(repository, found.get(i), favorites));
+            }
+            return Collections.unmodifiableList(found);
+        }
+
+        List<Product> result = new ArrayList<>();
+        BitSet matches = repository.search(query);
+        if (!category.equals("Все")) {
+            matches.and(repository.getCategoryIndex().bucket(category));
+        }
+        repository.getFacetIndex().filter(matches, facets);
+        if (byRelevance) {
+            // Сначала совпадения полнотекстового поиска по убыванию BM25, затем остальные найденные (нечёткий поиск)
+            for (String article : fullTextIndex.rankArticles(query)) {
+                int slot = repository.getSlot(article);
+                Product product = slot >= 0 && matches.get(slot) ? repository.getProductAt(slot) : null;
+                if (product != null && product.getPrice() >= priceRange.getMinPrice()
+                        && product.getPrice() <= priceRange.getMaxPrice()) {
+                    result.add(product.withFavorite(favorites.get(slot)));
+                    matches.clear(slot);
+                }
+            }
+        }
+        // Индекс цен уже отсортирован: диапазон находится двоичным поиском, товары идут сразу в нужном порядке
+        repository.getPriceIndex().forEachInRange(priceRange.getMinPrice(), priceRange.getMaxPrice(),
+                descending, matches, slot -> {
+                    Product product = repository.getProductAt(slot);
+                    if (product != null) {
+                        result.add(product.withFavorite(favorites.get(slot)));
+                    }
+                });
+        return Collections.unmodifiableList(result);
+    }
+
+    private static Product withFavorite(ProductRepository repository, Product product, BitSet favorites) {
+        int slot = repository.getSlot(product.getArticle());
+        return product.withFavorite(slot >= 0 && favorites.get(slot));
+    }
+}
@@ -0,0 +1,411 @@
+package com.example.sorapc;
+
+import android.content.Context;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.MetadataChanges;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * <summary>
+ * Класс CatalogPager загружает каталог постранично курсорами Firestore (orderBy + limit + startAfter).
+ * Страницы читаются из краткой проекции productSummaries, а не из полных документов товаров.
+ * Если проекции есть не у всех товаров (ProductSummary.listCollection) или каталог проекций без фильтров пуст,
+ * каталог листается по коллекции products — у её документов те же поля категории и цены.
+ * Категория и порядок цены передаются в сам запрос (whereEqualTo("category") + orderBy("price")),
+ * для этого в firestore.indexes.json объявлены составные индексы.
+ * Диапазон цен задаётся условиями по тому же полю price, поэтому дополнительных индексов не требует.
+ * Следующая страница запрашивается заранее, когда до конца загруженного списка остаётся PREFETCH_DISTANCE карточек.
+ * В памяти держится не больше MAX_PAGES страниц: при прокрутке вниз отбрасываются верхние страницы,
+ * при возврате наверх они загружаются снова через endBefore + limitToLast.
+ * Каждая страница читается только подпиской на свой запрос: первый снимок даёт её содержимое, следующие — изменения,
+ * поэтому документы страницы не читаются дважды. Если от изменений сдвинулась граница страницы,
+ * соседние страницы за этой границей отбрасываются и загружаются заново от новой границы.
+ * Страница показывается по первому же непустому снимку, в том числе из кэша; снимок сервера (isFromCache() == false)
+ * приходит той же подпиской и заменяет её содержимое как обычное изменение. Пустой снимок из кэша ничего не значит,
+ * поэтому страница ждёт ответа сервера. На локальную фильтрацию каталог переходит только при ошибке запроса,
+ * а как только сервер снова отвечает, слушатель узнаёт об этом через onPagingRestored.
+ * </summary>
+ */
+
+public class CatalogPager {
+
+    private static final int PAGE_SIZE = 20;
+    private static final int MAX_PAGES = 5;
+    private static final int PREFETCH_DISTANCE = 8;
+
+    // Интерфейс для перехода на локальную фильтрацию, когда запрос к серверу невозможен, и обратно
+    public interface OnPagingAvailabilityListener {
+        void onPagingUnavailable();
+
+        void onPagingRestored();
+    }
+
+    // Страница каталога: товары между курсорами first и last
+    private static class Page {
+        // Загружена вниз (startAfter + limit) или вверх (endBefore + limitToLast); неподвижна та граница, от которой шёл запрос
+        final boolean forward;
+        final List<Product> products = new ArrayList<>();
+        DocumentSnapshot first;
+        DocumentSnapshot last;
+        ListenerRegistration registration;
+        boolean loaded;
+
+        Page(boolean forward) {
+            this.forward = forward;
+        }
+    }
+
+    private final Context context;
+    private final FirebaseFirestore db;
+    private final ProductAdapter adapter;
+    private final DocumentChangeApplier.Mapper<Product> mapper;
+    private final OnPagingAvailabilityListener availabilityListener;
+    private final List<Page> pages = new ArrayList<>();
+    private final RecyclerView.OnScrollListener scrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+            checkPrefetch();
+        }
+    };
+
+    private RecyclerView recyclerView;
+    private String collection = ProductSummary.COLLECTION;
+    private boolean active;
+    private boolean descending;
+    private String categoryId; // null — все категории
+    private PriceRange priceRange = PriceRange.ANY;
+    private Page pending; // Страница, первый снимок которой ещё не пришёл
+    private boolean reachedEnd;
+    private boolean hasPrevious;
+    private int session; // Номер запуска; ответы от предыдущих запусков игнорируются
+    private ListenerRegistration serverProbe; // Ждёт ответа сервера после перехода на локальную фильтрацию
+
+    public CatalogPager(Context context, ProductAdapter adapter, DocumentChangeApplier.Mapper<Product> mapper,
+                        OnPagingAvailabilityListener availabilityListener) {
+        this.context = context;
+        this.db = FirebaseFirestore.getInstance();
+        this.adapter = adapter;
+        this.mapper = mapper;
+        this.availabilityListener = availabilityListener;
+    }
+
+    public void attach(RecyclerView recyclerView) {
+        this.recyclerView = recyclerView;
+        recyclerView.addOnScrollListener(scrollListener);
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    // Запускает постраничный просмотр с начала; повторный вызов с теми же параметрами ничего не делает
+    public void start(String categoryId, boolean descending, PriceRange priceRange) {
+        if (active && this.descending == descending && Objects.equals(this.categoryId, categoryId)
+                && this.priceRange.getMinPrice() == priceRange.getMinPrice()
+                && this.priceRange.getMaxPrice() == priceRange.getMaxPrice()) return;
+        stop();
+        stopServerProbe();
+        this.categoryId = categoryId;
+        this.descending = descending;
+        this.priceRange = priceRange;
+        active = true;
+        loadNext();
+        checkCollection();
+    }
+
+    // Если проекции есть не у всех товаров, каталог листается по полным документам products
+    private void checkCollection() {
+        if (!collection.equals(ProductSummary.COLLECTION)) return;
+        ProductSummary.listCollection(db).addOnSuccessListener(result -> {
+            if (!result.equals(collection)) {
+                useCollection(result);
+            }
+        });
+    }
+
+    private void useCollection(String newCollection) {
+        collection = newCollection;
+        if (!active) return;
+        stop();
+        active = true;
+        loadNext();
+    }
+
+    public void stop() {
+        session++;
+        cancelPending();
+        for (Page page : pages) {
+            page.registration.remove();
+        }
+        pages.clear();
+        active = false;
+        reachedEnd = false;
+        hasPrevious = false;
+    }
+
+    public void release() {
+        stop();
+        stopServerProbe();
+        if (recyclerView != null) {
+            recyclerView.removeOnScrollListener(scrollListener);
+        }
+    }
+
+    // Товары всех страниц, которые сейчас держатся в памяти; товар на стыке двух страниц берётся один раз
+    public List<Product> getLoadedProducts() {
+        List<Product> result = new ArrayList<>();
+        Set<String> articles = new HashSet<>();
+        for (Page page : pages) {
+            for (Product product : page.products) {
+                if (articles.add(product.getArticle())) {
+                    result.add(product);
+                }
+            }
+        }
+        return result;
+    }
+
+    private Query baseQuery() {
+        Query query = db.collection(collection);
+        if (categoryId != null) {
+            query = query.whereEqualTo("category", categoryId);
+        }
+        if (priceRange.getMinPrice() > 0) {
+            query = query.whereGreaterThanOrEqualTo("price", priceRange.getMinPrice());
+        }
+        if (priceRange.getMaxPrice() != Long.MAX_VALUE) {
+            query = query.whereLessThanOrEqualTo("price", priceRange.getMaxPrice());
+        }
+        return query.orderBy("price", descending ? Query.Direction.DESCENDING : Query.Direction.ASCENDING);
+    }
+
+    private void checkPrefetch() {
+        if (!active || recyclerView == null) return;
+        if (!(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) return;
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int itemCount = adapter.getItemCount();
+        int lastVisible = layoutManager.findLastVisibleItemPosition();
+        int firstVisible = layoutManager.findFirstVisibleItemPosition();
+        if (lastVisible >= itemCount - PREFETCH_DISTANCE) {
+            loadNext();
+        } else if (hasPrevious && firstVisible != RecyclerView.NO_POSITION && firstVisible <= PREFETCH_DISTANCE) {
+            loadPrevious();
+        }
+    }
+
+    private void loadNext() {
+        if (pending != null || reachedEnd) return;
+        boolean firstPage = pages.isEmpty();
+        if (!firstPage && pages.get(pages.size() - 1).last == null) return; // Все товары страницы удалены
+        Query query = baseQuery();
+        if (!firstPage) {
+            query = query.startAfter(pages.get(pages.size() - 1).last);
+        }
+        listen(new Page(true), query.limit(PAGE_SIZE));
+    }
+
+    private void loadPrevious() {
+        if (pending != null || !hasPrevious || pages.isEmpty() || pages.get(0).first == null) return;
+        listen(new Page(false), baseQuery().endBefore(pages.get(0).first).limitToLast(PAGE_SIZE));
+    }
+
+    // Метаданные нужны, чтобы узнать о подтверждении сервером пустой страницы: снимок без изменений документов
+    private void listen(Page page, Query query) {
+        int requestSession = session;
+        pending = page;
+        page.registration = query.addSnapshotListener(MetadataChanges.INCLUDE, (value, error) -> {
+            if (requestSession != session) return;
+            if (error != null) {
+                onPageError(page, error);
+            } else if (value != null) {
+                if (page.loaded) {
+                    onPageChanged(page, value);
+                } else {
+                    onPageLoaded(page, value);
+                }
+            }
+        });
+    }
+
+    private void onPageLoaded(Page page, QuerySnapshot snapshot) {
+        // В кэше этих товаров нет — ждём ответа сервера, страница остаётся ожидаемой
+        if (snapshot.isEmpty() && snapshot.getMetadata().isFromCache()) return;
+        pending = null;
+        page.loaded = true;
+
+        // Снимок из кэша показывается сразу; ответ сервера придёт следующим снимком и будет применён в onPageChanged
+        for (QueryDocumentSnapshot document : snapshot) {
+            page.products.add(mapper.map(document));
+        }
+        boolean full = snapshot.size() >= PAGE_SIZE;
+        if (page.forward) {
+            reachedEnd = !full;
+        } else {
+            hasPrevious = full;
+        }
+        if (snapshot.isEmpty()) {
+            page.registration.remove();
+            if (pages.isEmpty() && collection.equals(ProductSummary.COLLECTION) && categoryId == null && priceRange.isAny()) {
+                // Пустой каталог без фильтров означает, что проекций ещё нет, — читаем полные документы
+                useCollection("products");
+                return;
+            }
+            if (pages.isEmpty()) publish(); // Каталог пуст — убираем прежние результаты поиска
+            return;
+        }
+
+        updateBounds(page, snapshot);
+        if (page.forward) {
+            pages.add(page);
+            if (pages.size() > MAX_PAGES) {
+                // Окно заполнено — отпускаем самую верхнюю страницу
+                removePage(0);
+                hasPrevious = true;
+            }
+        } else {
+            pages.add(0, page);
+            if (pages.size() > MAX_PAGES) {
+                // Окно заполнено — отпускаем самую нижнюю страницу
+                removePage(pages.size() - 1);
+                reachedEnd = false;
+            }
+        }
+        publish();
+        checkPrefetch();
+    }
+
+    private void onPageChanged(Page page, QuerySnapshot snapshot) {
+        if (snapshot.getDocumentChanges().isEmpty()) return; // Изменились только метаданные
+        int index = pages.indexOf(page);
+        if (index < 0) return;
+
+        DocumentSnapshot oldFirst = page.first;
+        DocumentSnapshot oldLast = page.last;
+        DocumentChangeApplier.apply(snapshot, page.products, mapper);
+        updateBounds(page, snapshot);
+        if (page.forward && index == pages.size() - 1) {
+            // Снимок сервера мог дополнить неполную страницу из кэша
+            reachedEnd = snapshot.size() < PAGE_SIZE;
+        }
+
+        // Подвижная граница страницы сдвинулась — страницы за ней построены от старой границы и перезагружаются
+        if (page.forward && !sameDocument(oldLast, page.last)) {
+            cancelPending();
+            while (pages.size() > index + 1) {
+                removePage(pages.size() - 1);
+            }
+            if (page.products.isEmpty() && index > 0) {
+                removePage(index);
+                reachedEnd = false;
+            } else {
+                reachedEnd = snapshot.size() < PAGE_SIZE;
+            }
+        } else if (!page.forward && !sameDocument(oldFirst, page.first)) {
+            cancelPending();
+            for (int i = 0; i < index; i++) {
+                removePage(0);
+            }
+            if (page.products.isEmpty() && pages.size() > 1) {
+                removePage(0);
+            }
+            hasPrevious = true;
+        }
+        publish();
+        checkPrefetch();
+    }
+
+    private void onPageError(Page page, Exception e) {
+        if (page.loaded) return; // Подписка загруженной страницы прекратилась, её последние данные остаются на экране
+        pending = null;
+        if (pages.isEmpty() && page.forward) {
+            onUnavailable();
+        } else {
+            Toast.makeText(context, "Ошибка загрузки товаров: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private void onUnavailable() {
+        stop();
+        listenForServer();
+        if (availabilityListener != null) {
+            availabilityListener.onPagingUnavailable();
+        }
+    }
+
+    // Один документ каталога с метаданными: первый снимок с сервера означает, что постраничный просмотр снова возможен
+    private void listenForServer() {
+        if (serverProbe != null) return;
+        serverProbe = baseQuery().limit(1).addSnapshotListener(MetadataChanges.INCLUDE, (value, error) -> {
+            if (error != null || value == null || value.getMetadata().isFromCache()) return;
+            stopServerProbe();
+            if (availabilityListener != null) {
+                availabilityListener.onPagingRestored();
+            }
+        });
+    }
+
+    private void stopServerProbe() {
+        if (serverProbe != null) {
+            serverProbe.remove();
+            serverProbe = null;
+        }
+    }
+
+    private void cancelPending() {
+        if (pending != null) {
+            pending.registration.remove();
+            pending = null;
+        }
+    }
+
+    private static void updateBounds(Page page, QuerySnapshot snapshot) {
+        List<DocumentSnapshot> documents = snapshot.getDocuments();
+        page.first = documents.isEmpty() ? null : documents.get(0);
+        page.last = documents.isEmpty() ? null : documents.get(documents.size() - 1);
+    }
+
+    private static boolean sameDocument(DocumentSnapshot a, DocumentSnapshot b) {
+        if (a == null || b == null) return a == b;
+        return a.getId().equals(b.getId());
+    }
+
+    private void removePage(int index) {
+        Page page = pages.remove(index);
+        page.registration.remove();
+    }
+
+    // Заменяет товары загруженных страниц, например копиями с новой отметкой избранного, и перерисовывает изменившиеся
+    public void replaceProducts(UnaryOperator<Product> replacement) {
+        if (!active) return;
+        for (Page page : pages) {
+            page.products.replaceAll(replacement);
+        }
+        publish();
+    }
+
+    // Склеивает страницы окна в один список и передаёт адаптеру вместе с DiffUtil (окно ограничено, расчёт дешёвый)
+    private void publish() {
+        List<Product> newList = Collections.unmodifiableList(getLoadedProducts());
+        DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new ProductDiffCallback(adapter.getCurrentList(), newList));
+        adapter.submit(newList, diff);
+    }
+}
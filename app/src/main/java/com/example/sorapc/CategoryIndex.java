@@ -0,0 +1,77 @@
+package com.example.sorapc;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <summary>
+ * Класс CategoryIndex раскладывает товары по категориям: для каждого идентификатора категории хранится BitSet слотов товаров
+ * и число товаров в ней.
+ * Выбор категории сводится к одному поиску в словаре, а количество товаров для списка категорий не требует прохода по каталогу.
+ * Индекс обновляется репозиторием товаров, методы синхронизированы для чтения из фонового потока.
+ * </summary>
+ */
+
+public class CategoryIndex implements ProductIndex {
+
+    private final Map<String, BitSet> buckets = new HashMap<>();
+    private final Map<String, Integer> counts = new HashMap<>();
+
+    // Копия набора слотов категории, её можно изменять
+    public synchronized BitSet bucket(String categoryId) {
+        BitSet bucket = buckets.get(categoryId);
+        return bucket != null ? (BitSet) bucket.clone() : new BitSet();
+    }
+
+    public synchronized int count(String categoryId) {
+        Integer count = counts.get(categoryId);
+        return count != null ? count : 0;
+    }
+
+    @Override
+    public synchronized void onProductAdded(int slot, Product product) {
+        String categoryId = product.getCategory();
+        if (categoryId == null) return;
+        BitSet bucket = buckets.get(categoryId);
+        if (bucket == null) {
+            bucket = new BitSet();
+            buckets.put(categoryId, bucket);
+        }
+        if (!bucket.get(slot)) {
+            bucket.set(slot);
+            counts.put(categoryId, count(categoryId) + 1);
+        }
+    }
+
+    @Override
+    public synchronized void onProductModified(int slot, Product oldProduct, Product newProduct) {
+        String oldCategory = oldProduct.getCategory();
+        String newCategory = newProduct.getCategory();
+        if (oldCategory == null ? newCategory == null : oldCategory.equals(newCategory)) return;
+        onProductRemoved(slot, oldProduct);
+        onProductAdded(slot, newProduct);
+    }
+
+    @Override
+    public synchronized void onProductRemoved(int slot, Product product) {
+        String categoryId = product.getCategory();
+        if (categoryId == null) return;
+        BitSet bucket = buckets.get(categoryId);
+        if (bucket == null || !bucket.get(slot)) return;
+        bucket.clear(slot);
+        int count = count(categoryId) - 1;
+        if (count == 0) {
+            buckets.remove(categoryId);
+            counts.remove(categoryId);
+        } else {
+            counts.put(categoryId, count);
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        buckets.clear();
+        counts.clear();
+    }
+}
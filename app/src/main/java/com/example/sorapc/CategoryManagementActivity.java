@@ -67,7 +67,7 @@ public class CategoryManagementActivity extends AppCompatActivity implements Cat
                 .addOnSuccessListener(queryDocumentSnapshots -> {
                     categoryList.clear();
                     for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        Category category = document.toObject(Category.class);
+                        Category category = DocumentMappers.category(document);
                         category.setId(document.getId());
                         categoryList.add(category);
                     }
@@ -22,7 +22,6 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 
@@ -68,7 +67,6 @@ public class CheckoutActivity extends AppCompatActivity {
     private boolean isCardPayment = true;
     private FirebaseAuth auth;
     private FirebaseFirestore db;
-    private int processedProducts = 0;
     private List<Card> cards = new ArrayList<>();
     private Card selectedCard;
 
@@ -163,7 +161,7 @@ public class CheckoutActivity extends AppCompatActivity {
                 .addOnSuccessListener(queryDocumentSnapshots -> {
                     cards.clear();
                     for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        Card card = document.toObject(Card.class);
+                        Card card = DocumentMappers.card(document);
                         card.setCardId(document.getId());
                         cards.add(card);
                     }
@@ -257,96 +255,6 @@ public class CheckoutActivity extends AppCompatActivity {
             return;
         }
 
-        processedProducts = 0;
-
-        for (Product product : checkoutList) {
-            String productArticle = product.getArticle();
-            int quantityToReduce = product.getQuantity();
-
-            db.collection("products")
-                    .whereEqualTo("article", productArticle)
-                    .get()
-                    .addOnSuccessListener(queryDocumentSnapshots -> {
-                        if (!queryDocumentSnapshots.isEmpty()) {
-                            DocumentSnapshot document = queryDocumentSnapshots.getDocuments().get(0);
-                            Long currentQuantity = document.getLong("quantity");
-                            Long currentSalesCount = document.getLong("salesCount") != null ? document.getLong("salesCount") : 0L;
-                            if (currentQuantity != null && currentQuantity >= quantityToReduce) {
-                                String productId = document.getId();
-                                db.collection("products").document(productId)
-                                        .update(
-                                                "quantity", currentQuantity - quantityToReduce,
-                                                "salesCount", currentSalesCount + quantityToReduce
-                                        )
-                                        .addOnSuccessListener(aVoid -> {
-                                            synchronized (this) {
-                                                processedProducts++;
-                                                if (processedProducts == checkoutList.size()) {
-                                                    checkAllProductsProcessed(userId, userEmail);
-                                                }
-                                            }
-                                        })
-                                        .addOnFailureListener(e -> {
-                                            Toast.makeText(this, "Ошибка обновления данных товара: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                                            finish();
-                                        });
-                            } else {
-                                Toast.makeText(this, "Недостаточно товара: " + product.getTitle(), Toast.LENGTH_SHORT).show();
-                                finish();
-                            }
-                        } else {
-                            Toast.makeText(this, "Товар не найден: " + product.getTitle(), Toast.LENGTH_SHORT).show();
-                            finish();
-                        }
-                    })
-                    .addOnFailureListener(e -> {
-                        Toast.makeText(this, "Ошибка поиска товара: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                        finish();
-                    });
-        }
-    }
-
-    private void checkAllProductsProcessed(String userId, String userEmail) {
-        db.collection("products")
-                .whereIn("article", getArticlesList())
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    boolean allProcessed = true;
-                    for (DocumentSnapshot document : queryDocumentSnapshots) {
-                        Long currentQuantity = document.getLong("quantity");
-                        Product product = checkoutList.stream()
-                                .filter(p -> p.getArticle().equals(document.getString("article")))
-                                .findFirst()
-                                .orElse(null);
-                        if (product != null && currentQuantity != null) {
-                            if (currentQuantity < 0) {
-                                allProcessed = false;
-                                Toast.makeText(this, "Ошибка: отрицательное количество товара " + product.getTitle(), Toast.LENGTH_SHORT).show();
-                            }
-                        }
-                    }
-                    if (allProcessed) {
-                        clearCart(userId, userEmail);
-                    } else {
-                        Toast.makeText(this, "Не удалось обработать заказ. Проверьте корзину.", Toast.LENGTH_SHORT).show();
-                        finish();
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    Toast.makeText(this, "Ошибка проверки товаров: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                    finish();
-                });
-    }
-
-    private List<String> getArticlesList() {
-        List<String> articles = new ArrayList<>();
-        for (Product product : checkoutList) {
-            articles.add(product.getArticle());
-        }
-        return articles;
-    }
-
-    private void clearCart(String userId, String userEmail) {
         List<Product> orderedItems = new ArrayList<>(checkoutList);
         long totalPrice = orderedItems.stream().mapToLong(product -> product.getPrice() * product.getQuantity()).sum();
         long commission = isCardPayment ? (long) (totalPrice * 0.01) : 0;
@@ -361,29 +269,38 @@ public class CheckoutActivity extends AppCompatActivity {
                 getArticlesList()
         );
 
-        db.collection("users").document(userId)
-                .collection("orders")
-                .add(order)
-                .addOnSuccessListener(documentReference -> {
-                    db.collection("users").document(userId).collection("cart")
-                            .get()
-                            .addOnSuccessListener(queryDocumentSnapshots -> {
-                                for (DocumentSnapshot document : queryDocumentSnapshots) {
-                                    document.getReference().delete();
-                                }
-                                checkoutList.clear();
-                                checkoutAdapter.notifyDataSetChanged();
-                                sendElectronicReceipt(userEmail, orderedItems, totalPrice, commission, finalTotal);
-                            })
-                            .addOnFailureListener(e -> {
-                                Toast.makeText(this, "Ошибка очистки корзины: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                                finish();
-                            });
-                })
-                .addOnFailureListener(e -> {
-                    Toast.makeText(this, "Ошибка сохранения заказа: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                    finish();
-                });
+        // Незаписанные нажатия степпера больше не нужны: заказ оформляется по количествам из checkoutList
+        CartStore cartStore = CartStore.getInstance();
+        for (Product product : orderedItems) {
+            cartStore.discardStaged(product.getArticle());
+        }
+
+        checkoutButton.setEnabled(false);
+        updateButtonState();
+
+        // Остатки, заказ и корзина меняются одним атомарным пакетом записи
+        CheckoutTransaction.run(db, userId, orderedItems, order, new CheckoutTransaction.Callback() {
+            @Override
+            public void onSuccess(String orderId) {
+                checkoutList.clear();
+                checkoutAdapter.notifyDataSetChanged();
+                sendElectronicReceipt(userEmail, orderedItems, totalPrice, commission, finalTotal);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Toast.makeText(CheckoutActivity.this, "Не удалось оформить заказ: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                finish();
+            }
+        });
+    }
+
+    private List<String> getArticlesList() {
+        List<String> articles = new ArrayList<>();
+        for (Product product : checkoutList) {
+            articles.add(product.getArticle());
+        }
+        return articles;
     }
 
     private void sendElectronicReceipt(String userEmail, List<Product> orderedItems, long totalPrice, long commission, long finalTotal) {
@@ -12,9 +12,8 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
 
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * <summary>
@@ -46,18 +45,24 @@ public class CheckoutAdapter extends RecyclerView.Adapter<CheckoutAdapter.Checko
         Product product = checkoutList.get(position);
 
         holder.titleTextView.setText(product.getTitle());
-        holder.articleTextView.setText("Артикул: " + product.getArticle());
-
-        DecimalFormatSymbols symbols = new DecimalFormatSymbols();
-        symbols.setGroupingSeparator(' ');
-        DecimalFormat decimalFormat = new DecimalFormat("#,### ₽", symbols);
-        String formattedPrice = decimalFormat.format(product.getPrice() * product.getQuantity());
-        holder.priceTextView.setText("Цена: " + formattedPrice + " (x" + product.getQuantity() + ")");
-
-        Glide.with(context)
-                .load(product.getImg())
-                .placeholder(android.R.drawable.ic_menu_gallery)
-                .into(holder.productImage);
+        holder.articleTextView.setText(Formatters.articleLabel(product.getArticle()));
+
+        // Строку с количеством собираем, только если сумма или количество в карточке изменились
+        long total = product.getPrice() * product.getQuantity();
+        if (holder.boundTotal != total || holder.boundQuantity != product.getQuantity()) {
+            holder.boundTotal = total;
+            holder.boundQuantity = product.getQuantity();
+            holder.priceTextView.setText(Formatters.priceLabel(total) + " (x" + product.getQuantity() + ")");
+        }
+
+        // Изображение уже загружено в эту карточку — повторный запрос Glide не нужен
+        if (!Objects.equals(holder.boundImage, product.getImg())) {
+            holder.boundImage = product.getImg();
+            Glide.with(context)
+                    .load(product.getImg())
+                    .placeholder(android.R.drawable.ic_menu_gallery)
+                    .into(holder.productImage);
+        }
     }
 
     @Override
@@ -68,6 +73,10 @@ public class CheckoutAdapter extends RecyclerView.Adapter<CheckoutAdapter.Checko
     static class CheckoutViewHolder extends RecyclerView.ViewHolder {
         ImageView productImage;
         TextView titleTextView, articleTextView, priceTextView;
+        // Что уже показано в карточке, чтобы не форматировать и не загружать повторно
+        String boundImage;
+        long boundTotal = -1;
+        int boundQuantity = -1;
 
         public CheckoutViewHolder(@NonNull View itemView) {
             super(itemView);
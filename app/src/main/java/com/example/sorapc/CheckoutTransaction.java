@@ -0,0 +1,136 @@
+package com.example.sorapc;
+
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <summary>
+ * Класс CheckoutTransaction оформляет заказ одним атомарным пакетом записи Firestore: списывает остаток каждого товара
+ * и увеличивает число продаж приращениями StockMutations (вместе с проекцией productSummaries), создаёт документ заказа
+ * и удаляет заказанные товары из корзины. Либо применяются все изменения, либо ни одного,
+ * поэтому сбой на середине не оставляет списанный остаток без заказа.
+ * Документы товаров перед записью не читаются: остаток заранее сверяется с уже загруженным набором ProductRepository,
+ * а окончательно его проверяют правила Firestore, отклоняя пакет, после которого остаток стал бы отрицательным.
+ * Поле sold заказа перечисляет списываемые количества: правила разрешают покупателю уменьшить остаток только
+ * на количество из заказа, создаваемого тем же пакетом. Если у части товаров ещё нет проекции, пакет повторяется
+ * без проекций только этих товаров, остальные получают приращения как обычно. Отказ правил считается нехваткой товара,
+ * только если её подтверждает повторное чтение остатков; тогда возвращается FirebaseFirestoreException
+ * с кодом OUT_OF_RANGE и названием товара, иначе — исходная ошибка.
+ * </summary>
+ */
+
+public final class CheckoutTransaction {
+
+    // Интерфейс для получения результата оформления заказа
+    public interface Callback {
+        void onSuccess(String orderId);
+
+        void onFailure(Exception e);
+    }
+
+    private CheckoutTransaction() {}
+
+    public static void run(FirebaseFirestore db, String userId, List<Product> items, Order order, Callback callback) {
+        Product shortage = findLocalShortage(items);
+        if (shortage != null) {
+            callback.onFailure(shortageError(shortage));
+            return;
+        }
+
+        DocumentReference userRef = db.collection("users").document(userId);
+        DocumentReference orderRef = userRef.collection("orders").document();
+        Map<String, Long> sold = new HashMap<>();
+        for (Product item : items) {
+            Long count = sold.get(item.getArticle());
+            sold.put(item.getArticle(), (count != null ? count : 0) + item.getQuantity());
+        }
+        order.setSold(sold);
+        commit(db, userRef, orderRef, items, order, Collections.emptySet(), callback);
+    }
+
+    private static void commit(FirebaseFirestore db, DocumentReference userRef, DocumentReference orderRef,
+                               List<Product> items, Order order, Set<String> withoutSummary, Callback callback) {
+        WriteBatch batch = db.batch();
+        for (Product item : items) {
+            String article = item.getArticle();
+            StockMutations.sell(batch, db, article, item.getQuantity(), orderRef.getId(), !withoutSummary.contains(article));
+        }
+        batch.set(orderRef, order);
+        for (Product item : items) {
+            batch.delete(userRef.collection("cart").document(item.getArticle()));
+        }
+
+        batch.commit()
+                .addOnSuccessListener(aVoid -> callback.onSuccess(orderRef.getId()))
+                .addOnFailureListener(e -> {
+                    if (StockMutations.isMissingDocument(e)) {
+                        retryWithoutMissingSummaries(db, userRef, orderRef, items, order, withoutSummary, e, callback);
+                    } else if (StockMutations.isRejected(e)) {
+                        reportRejection(items, e, callback);
+                    } else {
+                        callback.onFailure(e);
+                    }
+                });
+    }
+
+    // Проекция собирается отдельно; повторяем, только если нашлись новые товары без проекции,
+    // иначе удалён сам товар и повтор вернёт ту же ошибку
+    private static void retryWithoutMissingSummaries(FirebaseFirestore db, DocumentReference userRef,
+                                                     DocumentReference orderRef, List<Product> items, Order order,
+                                                     Set<String> withoutSummary, Exception error, Callback callback) {
+        StockMutations.findMissingSummaries(db, order.getSold().keySet())
+                .addOnSuccessListener(missing -> {
+                    if (withoutSummary.containsAll(missing)) {
+                        callback.onFailure(error);
+                        return;
+                    }
+                    Set<String> skipped = new HashSet<>(withoutSummary);
+                    skipped.addAll(missing);
+                    commit(db, userRef, orderRef, items, order, skipped, callback);
+                })
+                .addOnFailureListener(e -> callback.onFailure(error));
+    }
+
+    // Отказ правил может означать и нехватку товара, и другую ошибку — различаем по актуальным остаткам
+    private static void reportRejection(List<Product> items, Exception rejection, Callback callback) {
+        Map<String, Integer> decrements = new HashMap<>();
+        for (Product item : items) {
+            decrements.put(item.getArticle(), item.getQuantity());
+        }
+        StockMutations.findShortage(decrements)
+                .addOnSuccessListener(article -> {
+                    Product shortage = null;
+                    for (Product item : items) {
+                        if (item.getArticle().equals(article)) shortage = item;
+                    }
+                    callback.onFailure(shortage != null ? shortageError(shortage) : rejection);
+                })
+                .addOnFailureListener(e -> callback.onFailure(rejection));
+    }
+
+    // Сверка с загруженными остатками без чтения Firestore
+    private static Product findLocalShortage(List<Product> items) {
+        ProductRepository repository = ProductRepository.getInstance();
+        for (Product item : items) {
+            Product loaded = repository.getProduct(item.getArticle());
+            if (loaded != null && loaded.getQuantity() < item.getQuantity()) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    private static FirebaseFirestoreException shortageError(Product item) {
+        return new FirebaseFirestoreException("Недостаточно товара: " + item.getTitle(),
+                FirebaseFirestoreException.Code.OUT_OF_RANGE);
+    }
+}
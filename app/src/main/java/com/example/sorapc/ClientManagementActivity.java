@@ -78,7 +78,7 @@ public class ClientManagementActivity extends AppCompatActivity implements Clien
                 .addOnSuccessListener(queryDocumentSnapshots -> {
                     clientList.clear();
                     for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        User user = document.toObject(User.class);
+                        User user = DocumentMappers.user(document);
                         user.setId(document.getId());
                         // Добавляем пользователя в список, только если это не текущий авторизованный пользователь
                         if (!user.getId().equals(currentUserId)) {
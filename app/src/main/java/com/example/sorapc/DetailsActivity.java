@@ -19,18 +19,17 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
 
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 /**
  * <summary>
@@ -55,8 +54,26 @@ public class DetailsActivity extends AppCompatActivity implements ReviewAdapter.
     private FirebaseFirestore db;
     private boolean isCharacteristicsVisible = false;
     private List<Review> reviews = new ArrayList<>();
-    private Map<String, Product> cartItems;
+    private CartStore cartStore;
+    private QuantityStepper quantityStepper;
+    private final CartStore.OnCartChangedListener cartListener = new CartStore.OnCartChangedListener() {
+        @Override
+        public void onCartChanged(Set<String> changedArticles) {
+            if (changedArticles.contains(product.getArticle())) {
+                updateAddToCartButton();
+            }
+        }
+
+        @Override
+        public void onCartError(FirebaseFirestoreException error) {
+            Toast.makeText(DetailsActivity.this, "Ошибка загрузки корзины: " + error.getMessage(), Toast.LENGTH_SHORT).show();
+        }
+    };
     private String productId; // Для хранения ID продукта в Firestore
+    // Подписки только на документы этого товара и его отзывы; снимаются в onDestroy
+    private ListenerRegistration productRegistration;
+    private ListenerRegistration favoriteRegistration;
+    private ListenerRegistration reviewsRegistration;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -114,7 +131,6 @@ public class DetailsActivity extends AppCompatActivity implements ReviewAdapter.
             return;
         }
 
-        cartItems = new HashMap<>();
         loadCartItems();
 
         loadProductDetails();
@@ -138,32 +154,44 @@ public class DetailsActivity extends AppCompatActivity implements ReviewAdapter.
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (productRegistration != null) {
+            productRegistration.remove();
+        }
+        if (favoriteRegistration != null) {
+            favoriteRegistration.remove();
+        }
+        if (reviewsRegistration != null) {
+            reviewsRegistration.remove();
+        }
+        if (cartStore != null) {
+            cartStore.removeListener(cartListener);
+        }
+    }
+
     private void loadReviews() {
-        db.collection("products")
-                .whereEqualTo("article", product.getArticle())
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    if (!queryDocumentSnapshots.isEmpty()) {
-                        DocumentSnapshot productDoc = queryDocumentSnapshots.getDocuments().get(0);
+        // Документ товара читается один раз и общий с загрузкой характеристик
+        ArticleLookup.getInstance().get(product.getArticle())
+                .addOnSuccessListener(productDoc -> {
+                    if (productDoc != null) {
                         productId = productDoc.getId();
 
-                        db.collection("products").document(productId)
+                        if (isDestroyed()) return;
+                        reviewsRegistration = db.collection("products").document(productId)
                                 .collection("reviews")
                                 .addSnapshotListener((value, error) -> {
                                     if (error != null) {
                                         Toast.makeText(this, "Ошибка загрузки отзывов: " + error.getMessage(), Toast.LENGTH_SHORT).show();
                                         return;
                                     }
-                                    reviews.clear();
-                                    if (value != null) {
-                                        for (DocumentSnapshot doc : value) {
-                                            Review review = doc.toObject(Review.class);
-                                            review.setReviewId(doc.getId()); // Сохраняем ID документа отзыва
-                                            review.setProductId(productId); // Сохраняем ID продукта
-                                            reviews.add(review);
-                                        }
-                                    }
-                                    reviewsList.getAdapter().notifyDataSetChanged();
+                                    DocumentChangeApplier.apply(value, reviews, doc -> {
+                                        Review review = DocumentMappers.review(doc);
+                                        review.setReviewId(doc.getId()); // Сохраняем ID документа отзыва
+                                        review.setProductId(productId); // Сохраняем ID продукта
+                                        return review;
+                                    }, reviewsList.getAdapter());
                                 });
                     } else {
                         Toast.makeText(this, "Товар не найден в базе данных", Toast.LENGTH_SHORT).show();
@@ -195,12 +223,9 @@ public class DetailsActivity extends AppCompatActivity implements ReviewAdapter.
                     }
 
                     Review review = new Review(userId, userName, reviewText, rating, new Date());
-                    db.collection("products")
-                            .whereEqualTo("article", product.getArticle())
-                            .get()
-                            .addOnSuccessListener(queryDocumentSnapshots -> {
-                                if (!queryDocumentSnapshots.isEmpty()) {
-                                    DocumentSnapshot productDoc = queryDocumentSnapshots.getDocuments().get(0);
+                    ArticleLookup.getInstance().get(product.getArticle())
+                            .addOnSuccessListener(productDoc -> {
+                                if (productDoc != null) {
                                     String productId = productDoc.getId();
 
                                     db.collection("products").document(productId)
@@ -331,12 +356,9 @@ public class DetailsActivity extends AppCompatActivity implements ReviewAdapter.
                     }
 
                     // Проверяем, оставлял ли пользователь уже отзыв
-                    db.collection("products")
-                            .whereEqualTo("article", product.getArticle())
-                            .get()
-                            .addOnSuccessListener(productSnapshots -> {
-                                if (!productSnapshots.isEmpty()) {
-                                    DocumentSnapshot productDoc = productSnapshots.getDocuments().get(0);
+                    ArticleLookup.getInstance().get(product.getArticle())
+                            .addOnSuccessListener(productDoc -> {
+                                if (productDoc != null) {
                                     String productId = productDoc.getId();
 
                                     db.collection("products").document(productId)
@@ -370,23 +392,10 @@ public class DetailsActivity extends AppCompatActivity implements ReviewAdapter.
     }
 
     private void loadCartItems() {
+        cartStore = CartStore.getInstance();
+        quantityStepper = new QuantityStepper(this);
         if (auth.getCurrentUser() == null) return;
-        String userId = auth.getCurrentUser().getUid();
-        db.collection("users").document(userId)
-                .collection("cart")
-                .addSnapshotListener((value, error) -> {
-                    if (error != null) {
-                        Toast.makeText(this, "Ошибка загрузки корзины: " + error.getMessage(), Toast.LENGTH_SHORT).show();
-                        return;
-                    }
-
-                    cartItems.clear();
-                    for (QueryDocumentSnapshot document : value) {
-                        Product cartProduct = document.toObject(Product.class);
-                        cartItems.put(cartProduct.getArticle(), cartProduct);
-                    }
-                    updateAddToCartButton();
-                });
+        cartStore.addListener(cartListener);
     }
 
     private void loadProductDetails() {
@@ -428,36 +437,24 @@ public class DetailsActivity extends AppCompatActivity implements ReviewAdapter.
     }
 
     private void syncWithFirestore() {
-        db.collection("products")
-                .whereEqualTo("article", product.getArticle())
+        if (ProductSummary.isSummary(product)) {
+            loadFullProduct();
+        }
+
+        // Изменения цены, остатка и характеристик приходят подпиской на один документ, а не на весь каталог
+        productRegistration = db.collection("products").document(product.getArticle())
                 .addSnapshotListener((value, error) -> {
                     if (error != null) {
                         Toast.makeText(this, "Ошибка синхронизации: " + error.getMessage(), Toast.LENGTH_SHORT).show();
                         return;
                     }
-
-                    if (value != null && !value.isEmpty()) {
-                        DocumentSnapshot document = value.getDocuments().get(0);
-                        Product updatedProduct = document.toObject(Product.class);
-                        if (updatedProduct != null) {
-                            product.setQuantity(updatedProduct.getQuantity());
-                            product.setPrice(updatedProduct.getPrice());
-                            product.setDescription(updatedProduct.getDescription());
-                            product.setGpu(updatedProduct.getGpu());
-                            product.setCpu(updatedProduct.getCpu());
-                            product.setMotherboard(updatedProduct.getMotherboard());
-                            product.setCooling(updatedProduct.getCooling());
-                            product.setRam(updatedProduct.getRam());
-                            product.setSsd(updatedProduct.getSsd());
-                            product.setPower(updatedProduct.getPower());
-                            product.setCaseName(updatedProduct.getCaseName());
-                            loadProductDetails();
-                        }
+                    if (value != null && value.exists()) {
+                        applyDetails(DocumentMappers.product(value));
                     }
                 });
 
         String userId = auth.getCurrentUser().getUid();
-        db.collection("users").document(userId)
+        favoriteRegistration = db.collection("users").document(userId)
                 .collection("favorites")
                 .document(product.getArticle())
                 .addSnapshotListener((value, error) -> {
@@ -470,6 +467,33 @@ public class DetailsActivity extends AppCompatActivity implements ReviewAdapter.
                 });
     }
 
+    // Карточка открыта из списка с краткой проекцией: описание и характеристики сразу показываем
+    // из документа ArticleLookup (часто уже прочитанного), не дожидаясь первого снимка подписки
+    private void loadFullProduct() {
+        ArticleLookup.getInstance().get(product.getArticle())
+                .addOnSuccessListener(document -> {
+                    if (document != null) {
+                        applyDetails(DocumentMappers.product(document));
+                    }
+                })
+                .addOnFailureListener(e -> Toast.makeText(this, "Ошибка загрузки характеристик: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+    }
+
+    private void applyDetails(Product updatedProduct) {
+        product.setQuantity(updatedProduct.getQuantity());
+        product.setPrice(updatedProduct.getPrice());
+        product.setDescription(updatedProduct.getDescription());
+        product.setGpu(updatedProduct.getGpu());
+        product.setCpu(updatedProduct.getCpu());
+        product.setMotherboard(updatedProduct.getMotherboard());
+        product.setCooling(updatedProduct.getCooling());
+        product.setRam(updatedProduct.getRam());
+        product.setSsd(updatedProduct.getSsd());
+        product.setPower(updatedProduct.getPower());
+        product.setCaseName(updatedProduct.getCaseName());
+        loadProductDetails();
+    }
+
     private void updateAvailability() {
         if (product.getQuantity() > 0) {
             productAvailability.setText("Есть в наличии (" + product.getQuantity() + " шт)");
@@ -481,11 +505,11 @@ public class DetailsActivity extends AppCompatActivity implements ReviewAdapter.
     }
 
     private void updateAddToCartButton() {
-        Product cartProduct = cartItems.get(product.getArticle());
-        if (cartProduct != null) {
+        int cartQuantity = cartStore != null ? cartStore.getQuantity(product.getArticle()) : 0;
+        if (cartQuantity > 0) {
             addToCartButton.setVisibility(View.GONE);
             quantityLayout.setVisibility(View.VISIBLE);
-            quantityText.setText(String.valueOf(cartProduct.getQuantity()));
+            quantityText.setText(Formatters.count(cartQuantity));
         } else {
             addToCartButton.setVisibility(View.VISIBLE);
             quantityLayout.setVisibility(View.GONE);
@@ -525,7 +549,7 @@ public class DetailsActivity extends AppCompatActivity implements ReviewAdapter.
         } else {
             db.collection("users").document(userId)
                     .collection("favorites").document(product.getArticle())
-                    .set(product)
+                    .set(ProductSummary.of(product))
                     .addOnSuccessListener(aVoid -> {
                     })
                     .addOnFailureListener(e -> {
@@ -546,17 +570,8 @@ public class DetailsActivity extends AppCompatActivity implements ReviewAdapter.
             return;
         }
 
-        String userId = auth.getCurrentUser().getUid();
-        product.setQuantity(1);
-        db.collection("users").document(userId)
-                .collection("cart").document(product.getArticle())
-                .set(product)
-                .addOnSuccessListener(aVoid -> {
-                    cartItems.put(product.getArticle(), product);
-                    addToCartButton.setVisibility(View.GONE);
-                    quantityLayout.setVisibility(View.VISIBLE);
-                    quantityText.setText(String.valueOf(product.getQuantity()));
-                })
+        // Кнопка обновится из уведомления CartStore: локальная запись приходит в подписку сразу
+        cartStore.add(product)
                 .addOnFailureListener(e -> {
                     Toast.makeText(this, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show();
                 });
@@ -568,38 +583,7 @@ public class DetailsActivity extends AppCompatActivity implements ReviewAdapter.
             return;
         }
 
-        Product cartItem = cartItems.get(product.getArticle());
-        if (cartItem != null) {
-            int quantity = cartItem.getQuantity();
-            if (quantity > 1) {
-                quantity--;
-                cartItem.setQuantity(quantity);
-                String userId = auth.getCurrentUser().getUid();
-                int finalQuantity = quantity;
-                db.collection("users").document(userId)
-                        .collection("cart").document(product.getArticle())
-                        .set(cartItem)
-                        .addOnSuccessListener(aVoid -> {
-                            quantityText.setText(String.valueOf(finalQuantity));
-                        })
-                        .addOnFailureListener(e -> {
-                            Toast.makeText(this, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                        });
-            } else {
-                String userId = auth.getCurrentUser().getUid();
-                db.collection("users").document(userId)
-                        .collection("cart").document(product.getArticle())
-                        .delete()
-                        .addOnSuccessListener(aVoid -> {
-                            cartItems.remove(product.getArticle());
-                            addToCartButton.setVisibility(View.VISIBLE);
-                            quantityLayout.setVisibility(View.GONE);
-                        })
-                        .addOnFailureListener(e -> {
-                            Toast.makeText(this, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                        });
-            }
-        }
+        quantityStepper.decrease(product);
     }
 
     private void increaseQuantity() {
@@ -608,44 +592,8 @@ public class DetailsActivity extends AppCompatActivity implements ReviewAdapter.
             return;
         }
 
-        Product cartItem = cartItems.get(product.getArticle());
-        if (cartItem != null) {
-            String userId = auth.getCurrentUser().getUid();
-            db.collection("products")
-                    .whereEqualTo("article", product.getArticle())
-                    .get()
-                    .addOnSuccessListener(queryDocumentSnapshots -> {
-                        if (!queryDocumentSnapshots.isEmpty()) {
-                            Long availableQuantity = queryDocumentSnapshots.getDocuments().get(0).getLong("quantity");
-                            if (availableQuantity != null) {
-                                int currentQuantity = cartItem.getQuantity();
-                                int newQuantity = currentQuantity + 1;
-
-                                if (newQuantity <= availableQuantity) {
-                                    cartItem.setQuantity(newQuantity);
-                                    db.collection("users").document(userId)
-                                            .collection("cart").document(product.getArticle())
-                                            .set(cartItem)
-                                            .addOnSuccessListener(aVoid -> {
-                                                quantityText.setText(String.valueOf(newQuantity));
-                                            })
-                                            .addOnFailureListener(e -> {
-                                                Toast.makeText(this, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                                            });
-                                } else {
-                                    Toast.makeText(this, "Недостаточно товара на складе", Toast.LENGTH_SHORT).show();
-                                }
-                            } else {
-                                Toast.makeText(this, "Ошибка: не удалось получить доступное количество", Toast.LENGTH_SHORT).show();
-                            }
-                        } else {
-                            Toast.makeText(this, "Товар не найден в базе данных", Toast.LENGTH_SHORT).show();
-                        }
-                    })
-                    .addOnFailureListener(e -> {
-                        Toast.makeText(this, "Ошибка проверки количества: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                    });
-        }
+        // В товаре экрана хранится остаток на складе, обновляемый подпиской на товары
+        quantityStepper.increase(product, product.getQuantity());
     }
 
     private void buyNow() {
@@ -654,16 +602,15 @@ public class DetailsActivity extends AppCompatActivity implements ReviewAdapter.
             return;
         }
 
-        String userId = auth.getCurrentUser().getUid();
-        product.setQuantity(1);
+        // В заказ передаём копию: у товара на экране остаётся остаток на складе
+        Product cartItem = new Product(product);
+        cartItem.setQuantity(1);
 
-        db.collection("users").document(userId)
-                .collection("cart").document(product.getArticle())
-                .set(product)
+        cartStore.add(product)
                 .addOnSuccessListener(aVoid -> {
                     Intent intent = new Intent(this, CheckoutActivity.class);
                     List<Product> cartItems = new ArrayList<>();
-                    cartItems.add(product);
+                    cartItems.add(cartItem);
                     intent.putExtra("cartItems", new ArrayList<>(cartItems));
                     startActivity(intent);
                 })
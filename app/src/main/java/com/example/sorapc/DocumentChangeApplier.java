@@ -0,0 +1,100 @@
+package com.example.sorapc;
+
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.ListUpdateCallback;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.List;
+
+/**
+ * <summary>
+ * Класс DocumentChangeApplier переносит изменения снимка Firestore (DocumentChange) в список элементов RecyclerView.
+ * Вместо полной перезагрузки списка десериализует только добавленные и изменённые документы
+ * и сообщает адаптеру точечные notifyItemInserted/Changed/Removed/Moved.
+ * Список должен повторять порядок запроса, поэтому его нельзя изменять в обход этого класса.
+ * </summary>
+ */
+
+public final class DocumentChangeApplier {
+
+    // Интерфейс для преобразования документа в элемент списка
+    public interface Mapper<T> {
+        T map(QueryDocumentSnapshot document);
+    }
+
+    // Интерфейс для описания частичного изменения элемента; null означает полную перепривязку
+    public interface PayloadFactory<T> {
+        Object payload(T oldItem, T newItem);
+    }
+
+    private DocumentChangeApplier() {}
+
+    // Для списков без адаптера: меняет только сам список
+    public static <T> void apply(QuerySnapshot snapshot, List<T> items, Mapper<T> mapper) {
+        apply(snapshot, items, mapper, null, NO_OP_CALLBACK);
+    }
+
+    public static <T> void apply(QuerySnapshot snapshot, List<T> items, Mapper<T> mapper, RecyclerView.Adapter<?> adapter) {
+        apply(snapshot, items, mapper, null, new AdapterListUpdateCallback(adapter));
+    }
+
+    public static <T> void apply(QuerySnapshot snapshot, List<T> items, Mapper<T> mapper,
+                                 PayloadFactory<T> payloads, RecyclerView.Adapter<?> adapter) {
+        apply(snapshot, items, mapper, payloads, new AdapterListUpdateCallback(adapter));
+    }
+
+    public static <T> void apply(QuerySnapshot snapshot, List<T> items, Mapper<T> mapper, ListUpdateCallback callback) {
+        apply(snapshot, items, mapper, null, callback);
+    }
+
+    public static <T> void apply(QuerySnapshot snapshot, List<T> items, Mapper<T> mapper,
+                                 PayloadFactory<T> payloads, ListUpdateCallback callback) {
+        if (snapshot == null) return;
+
+        // Индексы в DocumentChange рассчитаны на последовательное применение изменений
+        for (DocumentChange change : snapshot.getDocumentChanges()) {
+            int oldIndex = change.getOldIndex();
+            int newIndex = change.getNewIndex();
+            switch (change.getType()) {
+                case ADDED:
+                    items.add(newIndex, mapper.map(change.getDocument()));
+                    callback.onInserted(newIndex, 1);
+                    break;
+                case MODIFIED:
+                    T item = mapper.map(change.getDocument());
+                    T oldItem;
+                    if (oldIndex == newIndex) {
+                        oldItem = items.set(newIndex, item);
+                    } else {
+                        oldItem = items.remove(oldIndex);
+                        items.add(newIndex, item);
+                        callback.onMoved(oldIndex, newIndex);
+                    }
+                    callback.onChanged(newIndex, 1, payloads != null ? payloads.payload(oldItem, item) : null);
+                    break;
+                case REMOVED:
+                    items.remove(oldIndex);
+                    callback.onRemoved(oldIndex, 1);
+                    break;
+            }
+        }
+    }
+
+    private static final ListUpdateCallback NO_OP_CALLBACK = new ListUpdateCallback() {
+        @Override
+        public void onInserted(int position, int count) {}
+
+        @Override
+        public void onRemoved(int position, int count) {}
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {}
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {}
+    };
+}
@@ -0,0 +1,292 @@
+package com.example.sorapc;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <summary>
+ * Класс DocumentMappers преобразует документы Firestore в модели приложения без отражения.
+ * Поля читаются напрямую из DocumentSnapshot.getData() по тем же именам свойств, которые использует toObject(),
+ * и приводятся к типам по тем же правилам: целые из Long и Double, дробные из Long и Double,
+ * даты из Timestamp и Date. Несовместимый тип значения, как и в toObject(), приводит к исключению.
+ * Отличие одно: явный null в числовом или логическом поле даёт значение по умолчанию, а не исключение.
+ * Для отсутствующего документа методы возвращают null.
+ * Для товара и его проекции есть и обратное преобразование data() — те же поля, что пишет set() с моделью.
+ * </summary>
+ */
+
+public final class DocumentMappers {
+
+    private DocumentMappers() {}
+
+    // ---- Товары ----
+
+    public static Product product(DocumentSnapshot document) {
+        return product(document.getData());
+    }
+
+    public static Product product(Map<String, Object> data) {
+        if (data == null) return null;
+        Product product = new Product();
+        product.setArticle(string(data, "article"));
+        product.setCaseName(string(data, "caseName"));
+        product.setCooling(string(data, "cooling"));
+        product.setCpu(string(data, "cpu"));
+        product.setDescription(string(data, "description"));
+        product.setGpu(string(data, "gpu"));
+        product.setImg(string(data, "img"));
+        product.setMotherboard(string(data, "motherboard"));
+        product.setPower(string(data, "power"));
+        product.setPrice(longValue(data, "price"));
+        product.setRam(string(data, "ram"));
+        product.setSsd(string(data, "ssd"));
+        product.setTitle(string(data, "title"));
+        product.setFavorite(booleanValue(data, "favorite"));
+        product.setCategory(string(data, "category"));
+        product.setQuantity(intValue(data, "quantity"));
+        product.setSalesCount(longValue(data, "salesCount"));
+        product.setRamGb(intValue(data, "ramGb"));
+        product.setStorageGb(intValue(data, "storageGb"));
+        product.setPsuWatts(intValue(data, "psuWatts"));
+        product.setGpuVendor(string(data, "gpuVendor"));
+        product.setGpuModel(intValue(data, "gpuModel"));
+        product.setCpuVendor(string(data, "cpuVendor"));
+        product.setCpuCores(intValue(data, "cpuCores"));
+        product.setSpecVersion(intValue(data, "specVersion"));
+        return product;
+    }
+
+    // Поля товара в том виде, в котором их записывает set(product); нужен для записи части полей через merge
+    public static Map<String, Object> data(Product product) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("article", product.getArticle());
+        data.put("caseName", product.getCaseName());
+        data.put("cooling", product.getCooling());
+        data.put("cpu", product.getCpu());
+        data.put("description", product.getDescription());
+        data.put("gpu", product.getGpu());
+        data.put("img", product.getImg());
+        data.put("motherboard", product.getMotherboard());
+        data.put("power", product.getPower());
+        data.put("price", product.getPrice());
+        data.put("ram", product.getRam());
+        data.put("ssd", product.getSsd());
+        data.put("title", product.getTitle());
+        data.put("favorite", product.isFavorite());
+        data.put("category", product.getCategory());
+        data.put("quantity", product.getQuantity());
+        data.put("salesCount", product.getSalesCount());
+        data.put("ramGb", product.getRamGb());
+        data.put("storageGb", product.getStorageGb());
+        data.put("psuWatts", product.getPsuWatts());
+        data.put("gpuVendor", product.getGpuVendor());
+        data.put("gpuModel", product.getGpuModel());
+        data.put("cpuVendor", product.getCpuVendor());
+        data.put("cpuCores", product.getCpuCores());
+        data.put("specVersion", product.getSpecVersion());
+        return data;
+    }
+
+    public static ProductSummary productSummary(DocumentSnapshot document) {
+        return productSummary(document.getData());
+    }
+
+    public static ProductSummary productSummary(Map<String, Object> data) {
+        if (data == null) return null;
+        ProductSummary summary = new ProductSummary();
+        summary.setArticle(string(data, "article"));
+        summary.setTitle(string(data, "title"));
+        summary.setImg(string(data, "img"));
+        summary.setPrice(longValue(data, "price"));
+        summary.setQuantity(intValue(data, "quantity"));
+        summary.setCategory(string(data, "category"));
+        summary.setSalesCount(longValue(data, "salesCount"));
+        summary.setSummaryVersion(intValue(data, ProductSummary.VERSION_FIELD));
+        return summary;
+    }
+
+    public static Map<String, Object> data(ProductSummary summary) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("article", summary.getArticle());
+        data.put("title", summary.getTitle());
+        data.put("img", summary.getImg());
+        data.put("price", summary.getPrice());
+        data.put("quantity", summary.getQuantity());
+        data.put("category", summary.getCategory());
+        data.put("salesCount", summary.getSalesCount());
+        data.put(ProductSummary.VERSION_FIELD, summary.getSummaryVersion());
+        return data;
+    }
+
+    // ---- Заказы и отзывы ----
+
+    public static Order order(DocumentSnapshot document) {
+        return order(document.getData());
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Order order(Map<String, Object> data) {
+        if (data == null) return null;
+        Order order = new Order();
+        List<Object> items = list(data, "items");
+        if (items != null) {
+            List<Product> products = new ArrayList<>(items.size());
+            for (Object item : items) {
+                if (item != null && !(item instanceof Map)) throw mismatch("items", item, "Product");
+                products.add(product((Map<String, Object>) item));
+            }
+            order.setItems(products);
+        }
+        order.setTotalPrice(longValue(data, "totalPrice"));
+        order.setCommission(longValue(data, "commission"));
+        order.setFinalTotal(longValue(data, "finalTotal"));
+        order.setDate(date(data, "date"));
+        List<Object> articles = list(data, "articles");
+        if (articles != null) {
+            List<String> values = new ArrayList<>(articles.size());
+            for (Object article : articles) {
+                if (article != null && !(article instanceof String)) throw mismatch("articles", article, "String");
+                values.add((String) article);
+            }
+            order.setArticles(values);
+        }
+        return order;
+    }
+
+    public static Review review(DocumentSnapshot document) {
+        return review(document.getData());
+    }
+
+    public static Review review(Map<String, Object> data) {
+        if (data == null) return null;
+        Review review = new Review();
+        review.setReviewId(string(data, "reviewId"));
+        review.setProductId(string(data, "productId"));
+        review.setProductName(string(data, "productName"));
+        review.setUserId(string(data, "userId"));
+        review.setUserName(string(data, "userName"));
+        review.setText(string(data, "text"));
+        review.setRating((float) doubleValue(data, "rating"));
+        review.setDate(date(data, "date"));
+        return review;
+    }
+
+    // ---- Пользователи, карты, категории ----
+
+    public static User user(DocumentSnapshot document) {
+        return user(document.getData());
+    }
+
+    public static User user(Map<String, Object> data) {
+        if (data == null) return null;
+        User user = new User();
+        user.setId(string(data, "id"));
+        user.setSurname(string(data, "surname"));
+        user.setName(string(data, "name"));
+        user.setMiddlename(string(data, "middlename"));
+        user.setEmail(string(data, "email"));
+        user.setPhone(string(data, "phone"));
+        user.setRole(string(data, "role"));
+        return user;
+    }
+
+    public static Card card(DocumentSnapshot document) {
+        return card(document.getData());
+    }
+
+    public static Card card(Map<String, Object> data) {
+        if (data == null) return null;
+        Card card = new Card();
+        card.setCardId(string(data, "cardId"));
+        card.setCardNumber(string(data, "cardNumber"));
+        card.setExpiryDate(string(data, "expiryDate"));
+        card.setCvv(string(data, "cvv"));
+        return card;
+    }
+
+    public static Category category(DocumentSnapshot document) {
+        return category(document.getData());
+    }
+
+    public static Category category(Map<String, Object> data) {
+        if (data == null) return null;
+        Category category = new Category();
+        category.setId(string(data, "id"));
+        category.setTitle(string(data, "title"));
+        return category;
+    }
+
+    // ---- Приведение значений ----
+
+    private static String string(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        if (value == null || value instanceof String) return (String) value;
+        throw mismatch(field, value, "String");
+    }
+
+    private static boolean booleanValue(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        if (value == null) return false;
+        if (value instanceof Boolean) return (Boolean) value;
+        throw mismatch(field, value, "boolean");
+    }
+
+    private static long longValue(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        if (value == null) return 0;
+        if (value instanceof Long || value instanceof Integer) return ((Number) value).longValue();
+        if (value instanceof Double) {
+            double number = (Double) value;
+            if (number >= Long.MIN_VALUE && number <= Long.MAX_VALUE) return (long) number;
+        }
+        throw mismatch(field, value, "long");
+    }
+
+    private static int intValue(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        if (value == null) return 0;
+        if (value instanceof Integer) return (Integer) value;
+        if (value instanceof Long || value instanceof Double) {
+            double number = ((Number) value).doubleValue();
+            if (number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE) return ((Number) value).intValue();
+        }
+        throw mismatch(field, value, "int");
+    }
+
+    private static double doubleValue(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        if (value == null) return 0;
+        if (value instanceof Double || value instanceof Integer) return ((Number) value).doubleValue();
+        if (value instanceof Long) {
+            long number = (Long) value;
+            // Как и toObject(), не допускаем потерю точности при переводе long в double
+            if ((long) (double) number == number) return (double) number;
+        }
+        throw mismatch(field, value, "double");
+    }
+
+    private static Date date(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        if (value == null || value instanceof Date) return (Date) value;
+        if (value instanceof Timestamp) return ((Timestamp) value).toDate();
+        throw mismatch(field, value, "Date");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> list(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        if (value == null || value instanceof List) return (List<Object>) value;
+        throw mismatch(field, value, "List");
+    }
+
+    private static IllegalArgumentException mismatch(String field, Object value, String type) {
+        return new IllegalArgumentException("Поле " + field + ": значение типа "
+                + value.getClass().getSimpleName() + " нельзя преобразовать в " + type);
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.sorapc;
+
+import android.app.AlertDialog;
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.CheckBox;
+import android.widget.LinearLayout;
+import android.widget.ScrollView;
+import android.widget.TextView;
+
+import androidx.core.content.ContextCompat;
+
+import com.google.android.material.slider.RangeSlider;
+
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <summary>
+ * Класс FacetFilterDialog показывает диалог фильтров по характеристикам сборки.
+ * Для каждого поля SpecField выводятся значения с количеством подходящих товаров;
+ * при отметке значения количества пересчитываются через FacetIndex без прохода по каталогу.
+ * Над характеристиками выводится диапазон цен: гистограмма из PriceIndex и слайдер,
+ * границы диапазона выбираются двумя двоичными поисками по отсортированным ценам.
+ * </summary>
+ */
+
+public class FacetFilterDialog {
+
+    // Интерфейс для получения выбранных значений после нажатия "Применить"
+    public interface OnFacetsAppliedListener {
+        void onFacetsApplied(Map<SpecField, Set<String>> selection, PriceRange priceRange);
+    }
+
+    private final Context context;
+    private final FacetIndex facetIndex;
+    private final PriceIndex priceIndex;
+    private final BitSet candidates;
+    private final BitSet priceCandidates = new BitSet(); // Кандидаты внутри диапазона цен, переиспользуется при движении слайдера
+    private final Map<SpecField, Set<String>> selection = new EnumMap<>(SpecField.class);
+    private final Map<SpecField, Map<String, CheckBox>> checkBoxes = new EnumMap<>(SpecField.class);
+    private final OnFacetsAppliedListener listener;
+    // Границы выбранного диапазона цен; 0 и Long.MAX_VALUE — граница не задана.
+    // PriceRange собирается из них только при нажатии "Применить"
+    private long rangeMin;
+    private long rangeMax;
+    private long minPrice;
+    private long maxPrice;
+
+    public FacetFilterDialog(Context context, FacetIndex facetIndex, PriceIndex priceIndex, BitSet candidates,
+                             Map<SpecField, Set<String>> currentSelection, PriceRange currentPriceRange,
+                             OnFacetsAppliedListener listener) {
+        this.context = context;
+        this.facetIndex = facetIndex;
+        this.priceIndex = priceIndex;
+        this.candidates = candidates;
+        this.rangeMin = currentPriceRange.getMinPrice();
+        this.rangeMax = currentPriceRange.getMaxPrice();
+        this.listener = listener;
+        for (Map.Entry<SpecField, Set<String>> entry : currentSelection.entrySet()) {
+            selection.put(entry.getKey(), new HashSet<>(entry.getValue()));
+        }
+    }
+
+    public void show() {
+        int padding = (int) (16 * context.getResources().getDisplayMetrics().density);
+        LinearLayout content = new LinearLayout(context);
+        content.setOrientation(LinearLayout.VERTICAL);
+        content.setPadding(padding, padding, padding, padding);
+
+        minPrice = priceIndex.getMinPrice();
+        maxPrice = priceIndex.getMaxPrice();
+        if (maxPrice > minPrice) {
+            addPriceSection(content, padding);
+        }
+
+        Map<SpecField, Map<String, Integer>> counts = facetIndex.counts(priceCandidates(), selection);
+        for (SpecField field : SpecField.values()) {
+            Map<String, Integer> fieldCounts = counts.get(field);
+            if (fieldCounts == null || fieldCounts.isEmpty()) continue;
+
+            TextView header = new TextView(context);
+            header.setText(field.getTitle());
+            header.setTextColor(ContextCompat.getColor(context, R.color.Aquamarine));
+            header.setTextSize(16);
+            header.setPadding(0, padding / 2, 0, 0);
+            content.addView(header);
+
+            Map<String, CheckBox> fieldBoxes = new HashMap<>();
+            for (String value : fieldCounts.keySet()) {
+                CheckBox checkBox = new CheckBox(context);
+                checkBox.setTextColor(ContextCompat.getColor(context, R.color.white));
+                checkBox.setChecked(isSelected(field, value));
+                checkBox.setOnCheckedChangeListener((buttonView, isChecked) -> {
+                    Set<String> values = selection.get(field);
+                    if (values == null) {
+                        values = new HashSet<>();
+                        selection.put(field, values);
+                    }
+                    if (isChecked) {
+                        values.add(value);
+                    } else {
+                        values.remove(value);
+                    }
+                    updateCounts();
+                });
+                fieldBoxes.put(value, checkBox);
+                content.addView(checkBox);
+            }
+            checkBoxes.put(field, fieldBoxes);
+        }
+        updateCounts(counts);
+
+        ScrollView scrollView = new ScrollView(context);
+        scrollView.addView(content);
+
+        View customTitleView = LayoutInflater.from(context).inflate(R.layout.custom_dialog_title, null);
+        TextView titleTextView = customTitleView.findViewById(R.id.dialog_title);
+        titleTextView.setText("Фильтры");
+
+        new AlertDialog.Builder(context, R.style.CustomDialogTheme)
+                .setCustomTitle(customTitleView)
+                .setView(scrollView)
+                .setPositiveButton("Применить", (dialog, which) -> listener.onFacetsApplied(selection, priceRange()))
+                .setNeutralButton("Сбросить", (dialog, which) -> listener.onFacetsApplied(new EnumMap<>(SpecField.class), PriceRange.ANY))
+                .setNegativeButton("Отмена", null)
+                .show();
+    }
+
+    private void addPriceSection(LinearLayout content, int padding) {
+        TextView header = new TextView(context);
+        header.setText("Цена");
+        header.setTextColor(ContextCompat.getColor(context, R.color.Aquamarine));
+        header.setTextSize(16);
+        content.addView(header);
+
+        TextView rangeText = new TextView(context);
+        rangeText.setTextColor(ContextCompat.getColor(context, R.color.white));
+        content.addView(rangeText);
+
+        PriceHistogramView histogramView = new PriceHistogramView(context);
+        histogramView.setCounts(priceIndex.getHistogram());
+        histogramView.setPadding(padding / 2, padding / 2, padding / 2, 0);
+        content.addView(histogramView, new LinearLayout.LayoutParams(LinearLayout.LayoutParams.MATCH_PARENT, padding * 4));
+
+        long from = Math.max(minPrice, Math.min(rangeMin, maxPrice));
+        long to = Math.max(from, Math.min(rangeMax, maxPrice));
+        RangeSlider slider = new RangeSlider(context);
+        slider.setValueFrom(minPrice);
+        slider.setValueTo(maxPrice);
+        slider.setValues((float) from, (float) to);
+        content.addView(slider);
+        updatePriceViews(from, to, rangeText, histogramView);
+
+        slider.addOnChangeListener((rangeSlider, value, fromUser) -> {
+            List<Float> values = rangeSlider.getValues();
+            long selectedFrom = Math.round(values.get(0));
+            long selectedTo = Math.round(values.get(1));
+            // Крайние положения не ограничивают цену, чтобы не отсекать новые товары дороже текущего максимума
+            rangeMin = selectedFrom <= minPrice ? 0 : selectedFrom;
+            rangeMax = selectedTo >= maxPrice ? Long.MAX_VALUE : selectedTo;
+            updatePriceViews(selectedFrom, selectedTo, rangeText, histogramView);
+            updateCounts();
+        });
+    }
+
+    private void updatePriceViews(long from, long to, TextView rangeText, PriceHistogramView histogramView) {
+        rangeText.setText(Formatters.price(from) + " — " + Formatters.price(to));
+        float span = maxPrice - minPrice;
+        histogramView.setSelection((from - minPrice) / span, (to - minPrice) / span);
+    }
+
+    private PriceRange priceRange() {
+        return isAnyPrice() ? PriceRange.ANY : new PriceRange(rangeMin, rangeMax);
+    }
+
+    private boolean isAnyPrice() {
+        return rangeMin <= 0 && rangeMax == Long.MAX_VALUE;
+    }
+
+    // Кандидаты с учётом выбранного диапазона цен
+    private BitSet priceCandidates() {
+        if (isAnyPrice()) return candidates;
+        priceIndex.selectRange(rangeMin, rangeMax, priceCandidates);
+        priceCandidates.and(candidates);
+        return priceCandidates;
+    }
+
+    private boolean isSelected(SpecField field, String value) {
+        Set<String> values = selection.get(field);
+        return values != null && values.contains(value);
+    }
+
+    private void updateCounts() {
+        updateCounts(facetIndex.counts(priceCandidates(), selection));
+    }
+
+    private void updateCounts(Map<SpecField, Map<String, Integer>> counts) {
+        for (Map.Entry<SpecField, Map<String, CheckBox>> entry : checkBoxes.entrySet()) {
+            Map<String, Integer> fieldCounts = counts.get(entry.getKey());
+            for (Map.Entry<String, CheckBox> box : entry.getValue().entrySet()) {
+                Integer count = fieldCounts != null ? fieldCounts.get(box.getKey()) : null;
+                box.getValue().setText(box.getKey() + " (" + (count != null ? count : 0) + ")");
+            }
+        }
+    }
+}
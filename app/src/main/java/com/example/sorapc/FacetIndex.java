@@ -0,0 +1,141 @@
+package com.example.sorapc;
+
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * <summary>
+ * Класс FacetIndex хранит для каждого поля характеристик (SpecField) и каждого его значения BitSet слотов товаров.
+ * Выбранные значения одного поля объединяются (ИЛИ), разные поля пересекаются (И).
+ * Для каждого значения считается, сколько товаров останется, если выбрать его дополнительно к текущему выбору:
+ * для поля берётся пересечение выбора по остальным полям, после чего количество по значению — одно пересечение и подсчёт битов.
+ * Индекс обновляется репозиторием товаров, методы синхронизированы для чтения из фонового потока.
+ * </summary>
+ */
+
+public class FacetIndex implements ProductIndex {
+
+    private final Map<SpecField, TreeMap<String, BitSet>> postings = new EnumMap<>(SpecField.class);
+
+    public FacetIndex() {
+        for (SpecField field : SpecField.values()) {
+            postings.put(field, new TreeMap<>());
+        }
+    }
+
+    // Оставляет в candidates только товары, подходящие под выбранные значения
+    public synchronized void filter(BitSet candidates, Map<SpecField, Set<String>> selection) {
+        for (Map.Entry<SpecField, Set<String>> entry : selection.entrySet()) {
+            if (entry.getValue().isEmpty()) continue;
+            candidates.and(union(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    // Количество оставшихся товаров для каждого значения каждого поля при текущем выборе
+    public synchronized Map<SpecField, Map<String, Integer>> counts(BitSet candidates, Map<SpecField, Set<String>> selection) {
+        Map<SpecField, BitSet> unions = new EnumMap<>(SpecField.class);
+        for (Map.Entry<SpecField, Set<String>> entry : selection.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                unions.put(entry.getKey(), union(entry.getKey(), entry.getValue()));
+            }
+        }
+
+        Map<SpecField, Map<String, Integer>> result = new EnumMap<>(SpecField.class);
+        BitSet base = new BitSet();
+        BitSet scratch = new BitSet();
+        for (SpecField field : SpecField.values()) {
+            // Выбор по самому полю не учитываем, иначе соседние значения всегда показывали бы ноль
+            base.clear();
+            base.or(candidates);
+            for (Map.Entry<SpecField, BitSet> entry : unions.entrySet()) {
+                if (entry.getKey() != field) {
+                    base.and(entry.getValue());
+                }
+            }
+
+            Map<String, Integer> fieldCounts = new LinkedHashMap<>();
+            for (Map.Entry<String, BitSet> entry : postings.get(field).entrySet()) {
+                scratch.clear();
+                scratch.or(entry.getValue());
+                scratch.and(base);
+                fieldCounts.put(entry.getKey(), scratch.cardinality());
+            }
+            result.put(field, fieldCounts);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void onProductAdded(int slot, Product product) {
+        for (SpecField field : SpecField.values()) {
+            String value = key(field.valueOf(product));
+            if (value == null) continue;
+            TreeMap<String, BitSet> values = postings.get(field);
+            BitSet posting = values.get(value);
+            if (posting == null) {
+                posting = new BitSet();
+                values.put(value, posting);
+            }
+            posting.set(slot);
+        }
+    }
+
+    @Override
+    public synchronized void onProductModified(int slot, Product oldProduct, Product newProduct) {
+        boolean changed = false;
+        for (SpecField field : SpecField.values()) {
+            if (!Objects.equals(key(field.valueOf(oldProduct)), key(field.valueOf(newProduct)))) {
+                changed = true;
+                break;
+            }
+        }
+        if (!changed) return; // Изменились цена или остаток, характеристики прежние
+        onProductRemoved(slot, oldProduct);
+        onProductAdded(slot, newProduct);
+    }
+
+    @Override
+    public synchronized void onProductRemoved(int slot, Product product) {
+        for (SpecField field : SpecField.values()) {
+            String value = key(field.valueOf(product));
+            if (value == null) continue;
+            TreeMap<String, BitSet> values = postings.get(field);
+            BitSet posting = values.get(value);
+            if (posting == null) continue;
+            posting.clear(slot);
+            if (posting.isEmpty()) {
+                values.remove(value);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        for (TreeMap<String, BitSet> values : postings.values()) {
+            values.clear();
+        }
+    }
+
+    private BitSet union(SpecField field, Set<String> values) {
+        BitSet result = new BitSet();
+        TreeMap<String, BitSet> fieldPostings = postings.get(field);
+        for (String value : values) {
+            BitSet posting = fieldPostings.get(value);
+            if (posting != null) {
+                result.or(posting);
+            }
+        }
+        return result;
+    }
+
+    private static String key(String value) {
+        if (value == null) return null;
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.sorapc;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.BitSet;
+
+/**
+ * <summary>
+ * Класс FavoritesIndex хранит состав избранного пользователя для быстрой проверки карточек.
+ * Принадлежность избранному хранится битом в BitSet по слотам ProductRepository — тем же, что у CategoryIndex,
+ * FacetIndex и SearchIndex, — поэтому проверка товара выполняется за O(1), а набор избранного
+ * можно пересекать с их результатами (toBitSet).
+ * Индекс обновляется только изменениями снимка (DocumentChange): документы избранного не разбираются,
+ * артикулом служит идентификатор документа.
+ * Вызывается из главного потока.
+ * </summary>
+ */
+
+public class FavoritesIndex {
+
+    private final ProductRepository repository = ProductRepository.getInstance();
+    private final BitSet favorites = new BitSet();
+
+    // Применяет изменения снимка избранного; возвращает true, если состав избранного изменился
+    public boolean apply(QuerySnapshot snapshot) {
+        if (snapshot == null) return false;
+        boolean changed = false;
+        for (DocumentChange change : snapshot.getDocumentChanges()) {
+            int slot = repository.acquireSlot(change.getDocument().getId());
+            boolean favorite = change.getType() != DocumentChange.Type.REMOVED;
+            if (favorites.get(slot) != favorite) {
+                favorites.set(slot, favorite);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    public boolean contains(String article) {
+        if (article == null) return false;
+        int slot = repository.getSlot(article);
+        return slot >= 0 && favorites.get(slot);
+    }
+
+    // Копия набора по слотам ProductRepository для пересечения с индексами каталога
+    public BitSet toBitSet() {
+        return (BitSet) favorites.clone();
+    }
+
+    public int size() {
+        return favorites.cardinality();
+    }
+}
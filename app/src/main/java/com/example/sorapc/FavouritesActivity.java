@@ -12,8 +12,9 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -33,6 +34,18 @@ public class FavouritesActivity extends AppCompatActivity {
     private List<Product> favouritesList;
     private ImageView backIcon;
     private TextView emptyFavouritesText, empty_favourites_hint_text;
+    private ProductRepository productRepository;
+    private final ProductRepository.OnProductsChangedListener productsListener = new ProductRepository.OnProductsChangedListener() {
+        @Override
+        public void onProductsChanged(List<Product> products) {
+            updateQuantitiesFromRepository();
+        }
+
+        @Override
+        public void onProductsError(FirebaseFirestoreException error) {
+            Toast.makeText(FavouritesActivity.this, "Ошибка синхронизации товаров: " + error.getMessage(), Toast.LENGTH_SHORT).show();
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -62,12 +75,25 @@ public class FavouritesActivity extends AppCompatActivity {
 
         backIcon.setOnClickListener(v -> onBackPressed());
 
+        // Остатки товаров берём из общего для приложения набора товаров
+        productRepository = ProductRepository.getInstance();
+        productRepository.addListener(productsListener);
+
         loadFavourites();
 
         View headerView = findViewById(R.id.header);
         new Header(headerView, this);
+    }
 
-        listenForProductsChanges(); // Добавляем слушатель изменений в products
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (productRepository != null) {
+            productRepository.removeListener(productsListener);
+        }
+        if (favouritesAdapter != null) {
+            favouritesAdapter.release();
+        }
     }
 
     private void loadFavourites() {
@@ -80,63 +106,64 @@ public class FavouritesActivity extends AppCompatActivity {
                         return;
                     }
 
-                    List<Product> newFavouritesList = new ArrayList<>();
-                    for (QueryDocumentSnapshot document : value) {
-                        Product product = document.toObject(Product.class);
+                    List<Product> changedProducts = new ArrayList<>();
+                    DocumentChangeApplier.apply(value, favouritesList, document -> {
+                        // В избранном хранятся проекции товаров (ProductSummary.of)
+                        Product product = DocumentMappers.productSummary(document).toProduct();
                         product.setFavorite(true);
-                        newFavouritesList.add(product);
-                    }
-
-                    favouritesList.clear();
-                    favouritesList.addAll(newFavouritesList);
+                        Product repositoryProduct = productRepository.getProduct(product.getArticle());
+                        if (repositoryProduct != null) {
+                            product.setQuantity(repositoryProduct.getQuantity());
+                        } else {
+                            changedProducts.add(product);
+                        }
+                        return product;
+                    }, (oldProduct, newProduct) -> ProductPayload.diff(oldProduct, newProduct, ProductPayload.STOCK), favouritesAdapter);
 
                     emptyFavouritesText.setVisibility(favouritesList.isEmpty() ? View.VISIBLE : View.GONE);
                     empty_favourites_hint_text.setVisibility(favouritesList.isEmpty() ? View.VISIBLE : View.GONE);
                     favouritesRecyclerView.setVisibility(favouritesList.isEmpty() ? View.GONE : View.VISIBLE);
 
-                    syncQuantities(); // Синхронизируем quantity после загрузки избранного
-                    favouritesAdapter.notifyDataSetChanged();
+                    syncQuantities(changedProducts); // Синхронизируем quantity только для новых и изменённых товаров
                 });
     }
 
-    private void syncQuantities() {
-        for (Product favouriteProduct : favouritesList) {
-            db.collection("products")
-                    .whereEqualTo("article", favouriteProduct.getArticle())
-                    .get()
-                    .addOnSuccessListener(queryDocumentSnapshots -> {
-                        if (!queryDocumentSnapshots.isEmpty()) {
-                            Product updatedProduct = queryDocumentSnapshots.getDocuments().get(0).toObject(Product.class);
-                            favouriteProduct.setQuantity(updatedProduct.getQuantity());
-                            favouritesAdapter.notifyDataSetChanged();
-                        }
-                    })
-                    .addOnFailureListener(e -> {
-                        Toast.makeText(this, "Ошибка синхронизации количества: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                    });
+    private void syncQuantities(List<Product> products) {
+        if (products.isEmpty()) return;
+        List<String> articles = new ArrayList<>(products.size());
+        for (Product favouriteProduct : products) {
+            articles.add(favouriteProduct.getArticle());
         }
-    }
-
-    private void listenForProductsChanges() {
-        db.collection("products")
-                .addSnapshotListener((value, error) -> {
-                    if (error != null) {
-                        Toast.makeText(this, "Ошибка синхронизации товаров: " + error.getMessage(), Toast.LENGTH_SHORT).show();
-                        return;
-                    }
-
-                    for (QueryDocumentSnapshot document : value) {
-                        Product updatedProduct = document.toObject(Product.class);
-                        for (Product favouriteProduct : favouritesList) {
-                            if (favouriteProduct.getArticle().equals(updatedProduct.getArticle())) {
-                                favouriteProduct.setQuantity(updatedProduct.getQuantity());
-                            }
+        // Остатки всех товаров читаем одним запросом по идентификаторам документов
+        ArticleLookup.getInstance().getAll(articles)
+                .addOnSuccessListener(documents -> {
+                    for (Product favouriteProduct : products) {
+                        DocumentSnapshot document = documents.get(favouriteProduct.getArticle());
+                        if (document == null) continue;
+                        Long quantity = document.getLong("quantity");
+                        favouriteProduct.setQuantity(quantity != null ? quantity.intValue() : 0);
+                        int position = favouritesList.indexOf(favouriteProduct);
+                        if (position != -1) {
+                            favouritesAdapter.notifyItemChanged(position, ProductPayload.STOCK);
                         }
                     }
-                    favouritesAdapter.notifyDataSetChanged();
+                })
+                .addOnFailureListener(e -> {
+                    Toast.makeText(this, "Ошибка синхронизации количества: " + e.getMessage(), Toast.LENGTH_SHORT).show();
                 });
     }
 
+    private void updateQuantitiesFromRepository() {
+        for (int i = 0; i < favouritesList.size(); i++) {
+            Product favouriteProduct = favouritesList.get(i);
+            Product updatedProduct = productRepository.getProduct(favouriteProduct.getArticle());
+            if (updatedProduct != null && updatedProduct.getQuantity() != favouriteProduct.getQuantity()) {
+                favouriteProduct.setQuantity(updatedProduct.getQuantity());
+                favouritesAdapter.notifyItemChanged(i, ProductPayload.STOCK);
+            }
+        }
+    }
+
     @Override
     public void onBackPressed() {
         super.onBackPressed();
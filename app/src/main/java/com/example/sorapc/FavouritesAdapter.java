@@ -18,14 +18,9 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
 
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
 
 /**
  * <summary>
@@ -40,42 +35,73 @@ public class FavouritesAdapter extends RecyclerView.Adapter<FavouritesAdapter.Fa
     private List<Product> favouritesList;
     private FirebaseAuth auth;
     private FirebaseFirestore db;
-    private Map<String, Product> cartItems; // Для хранения товаров в корзине
+    private final CartStore cartStore;
+    private final QuantityStepper quantityStepper;
+    // Перерисовываем только карточки, у которых изменилось количество в корзине
+    private final CartStore.OnCartChangedListener cartListener = changedArticles -> {
+        for (String article : changedArticles) {
+            notifyArticleChanged(article, ProductPayload.CART_QTY);
+        }
+    };
+    private final ColorStateList availableTint;
+    private final ColorStateList unavailableTint;
 
     public FavouritesAdapter(Context context, List<Product> favouritesList) {
         this.context = context;
         this.favouritesList = favouritesList;
         this.auth = FirebaseAuth.getInstance();
         this.db = FirebaseFirestore.getInstance();
-        this.cartItems = new HashMap<>();
-        loadCartItems(); // Загружаем товары из корзины при инициализации
+        this.cartStore = CartStore.getInstance();
+        this.quantityStepper = new QuantityStepper(context);
+        this.availableTint = ColorStateList.valueOf(ContextCompat.getColor(context, R.color.Aquamarine));
+        this.unavailableTint = ColorStateList.valueOf(ContextCompat.getColor(context, R.color.disabled_button_color));
+        setHasStableIds(true);
+        cartStore.addListener(cartListener);
     }
 
-    private void loadCartItems() {
-        if (auth.getCurrentUser() == null) return;
-        String userId = auth.getCurrentUser().getUid();
-        db.collection("users").document(userId)
-                .collection("cart")
-                .addSnapshotListener((value, error) -> {
-                    if (error != null) {
-                        Toast.makeText(context, "Ошибка загрузки корзины: " + error.getMessage(), Toast.LENGTH_SHORT).show();
-                        return;
-                    }
-
-                    cartItems.clear();
-                    for (QueryDocumentSnapshot document : value) {
-                        Product product = document.toObject(Product.class);
-                        cartItems.put(product.getArticle(), product);
-                    }
-                    notifyDataSetChanged(); // Обновляем отображение
-                });
+    // Отписывает адаптер от общей корзины; вызывается из onDestroy экрана
+    public void release() {
+        cartStore.removeListener(cartListener);
+    }
+
+    private void notifyArticleChanged(String article, ProductPayload payload) {
+        for (int i = 0; i < favouritesList.size(); i++) {
+            if (article.equals(favouritesList.get(i).getArticle())) {
+                notifyItemChanged(i, payload);
+                return;
+            }
+        }
     }
 
     @NonNull
     @Override
     public FavouritesViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(context).inflate(R.layout.item_product, parent, false);
-        return new FavouritesViewHolder(view);
+        FavouritesViewHolder holder = new FavouritesViewHolder(view);
+        // Обработчики создаются один раз на карточку и берут товар по текущей позиции, а не из привязки
+        holder.favoriteIcon.setOnClickListener(v -> {
+            Product product = productAt(holder);
+            if (product != null) removeFavorite(product);
+        });
+        holder.addToCartButton.setOnClickListener(v -> {
+            Product product = productAt(holder);
+            if (product != null) addToCart(product);
+        });
+        holder.decreaseQuantityButton.setOnClickListener(v -> {
+            Product product = productAt(holder);
+            if (product != null) decreaseQuantity(product);
+        });
+        holder.increaseQuantityButton.setOnClickListener(v -> {
+            Product product = productAt(holder);
+            if (product != null) increaseQuantity(product);
+        });
+        return holder;
+    }
+
+    // Товар, к которому сейчас привязана карточка; null, если карточка уже убрана из списка
+    private Product productAt(FavouritesViewHolder holder) {
+        int position = holder.getBindingAdapterPosition();
+        return position != RecyclerView.NO_POSITION && position < favouritesList.size() ? favouritesList.get(position) : null;
     }
 
     @Override
@@ -83,28 +109,59 @@ public class FavouritesAdapter extends RecyclerView.Adapter<FavouritesAdapter.Fa
         Product product = favouritesList.get(position);
 
         holder.titleTextView.setText(product.getTitle());
-        holder.articleTextView.setText("Артикул: " + product.getArticle());
+        holder.articleTextView.setText(Formatters.articleLabel(product.getArticle()));
 
-        DecimalFormatSymbols symbols = new DecimalFormatSymbols();
-        symbols.setGroupingSeparator(' ');
-        DecimalFormat decimalFormat = new DecimalFormat("#,### ₽", symbols);
-        String formattedPrice = decimalFormat.format(product.getPrice());
-        holder.priceTextView.setText("Цена: " + formattedPrice);
+        bindPrice(holder, product);
 
-        Glide.with(context)
-                .load(product.getImg())
-                .placeholder(android.R.drawable.ic_menu_gallery)
-                .into(holder.productImage);
+        // Изображение уже загружено в эту карточку — повторный запрос Glide не нужен
+        if (!Objects.equals(holder.boundImage, product.getImg())) {
+            holder.boundImage = product.getImg();
+            Glide.with(context)
+                    .load(product.getImg())
+                    .placeholder(android.R.drawable.ic_menu_gallery)
+                    .into(holder.productImage);
+        }
 
         holder.favoriteIcon.setImageResource(R.drawable.heart_pressed);
 
+        bindCartState(holder, product);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull FavouritesViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+
+        // Частичное обновление: меняем только затронутые представления, без Glide и полной перепривязки
+        Product product = favouritesList.get(position);
+        int changes = ProductPayload.collect(payloads);
+        if (ProductPayload.PRICE.in(changes)) {
+            bindPrice(holder, product);
+        }
+        if (ProductPayload.CART_QTY.in(changes) || ProductPayload.STOCK.in(changes)) {
+            bindCartState(holder, product);
+        }
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return ArticleIds.of(favouritesList.get(position).getArticle());
+    }
+
+    private void bindPrice(FavouritesViewHolder holder, Product product) {
+        holder.priceTextView.setText(Formatters.priceLabel(product.getPrice()));
+    }
+
+    private void bindCartState(FavouritesViewHolder holder, Product product) {
         // Проверяем, есть ли товар в корзине
-        Product cartProduct = cartItems.get(product.getArticle());
-        if (cartProduct != null) {
+        int cartQuantity = cartStore.getQuantity(product.getArticle());
+        if (cartQuantity > 0) {
             // Товар в корзине — показываем quantity_layout
             holder.addToCartButton.setVisibility(View.GONE);
             holder.quantityLayout.setVisibility(View.VISIBLE);
-            holder.quantityText.setText(String.valueOf(cartProduct.getQuantity()));
+            holder.quantityText.setText(Formatters.count(cartQuantity));
         } else {
             // Товара нет в корзине — показываем кнопку "В корзину"
             holder.addToCartButton.setVisibility(View.VISIBLE);
@@ -115,149 +172,68 @@ public class FavouritesAdapter extends RecyclerView.Adapter<FavouritesAdapter.Fa
         if (product.getQuantity() <= 0) {
             holder.addToCartButton.setText("Нет товара");
             holder.addToCartButton.setEnabled(false);
-            holder.addToCartButton.setBackgroundTintList(ColorStateList.valueOf(ContextCompat.getColor(context, R.color.disabled_button_color)));
+            holder.addToCartButton.setBackgroundTintList(unavailableTint);
             holder.quantityLayout.setVisibility(View.GONE);
         } else {
             holder.addToCartButton.setText("В корзину");
             holder.addToCartButton.setEnabled(true);
-            holder.addToCartButton.setBackgroundTintList(ColorStateList.valueOf(ContextCompat.getColor(context, R.color.Aquamarine)));
+            holder.addToCartButton.setBackgroundTintList(availableTint);
         }
+    }
 
-        holder.favoriteIcon.setOnClickListener(v -> {
-            if (auth.getCurrentUser() == null) {
-                Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
-                return;
-            }
+    private void removeFavorite(Product product) {
+        if (auth.getCurrentUser() == null) {
+            Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
+            return;
+        }
 
-            String userId = auth.getCurrentUser().getUid();
-            db.collection("users").document(userId)
-                    .collection("favorites").document(product.getArticle())
-                    .delete()
-                    .addOnSuccessListener(aVoid -> {
-                        notifyDataSetChanged();
-                    })
-                    .addOnFailureListener(e -> {
-                        Toast.makeText(context, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                    });
-        });
+        String userId = auth.getCurrentUser().getUid();
+        db.collection("users").document(userId)
+                .collection("favorites").document(product.getArticle())
+                .delete()
+                .addOnFailureListener(e -> {
+                    Toast.makeText(context, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                });
+    }
 
-        holder.addToCartButton.setOnClickListener(v -> {
-            if (auth.getCurrentUser() == null) {
-                Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
-                return;
-            }
+    private void addToCart(Product product) {
+        if (auth.getCurrentUser() == null) {
+            Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
+            return;
+        }
 
-            if (product.getQuantity() <= 0) {
-                Toast.makeText(context, "Товара нет в наличии", Toast.LENGTH_SHORT).show();
-                return;
-            }
+        if (product.getQuantity() <= 0) {
+            Toast.makeText(context, "Товара нет в наличии", Toast.LENGTH_SHORT).show();
+            return;
+        }
 
-            String userId = auth.getCurrentUser().getUid();
-            product.setQuantity(1); // Устанавливаем количество 1 при добавлении в корзину
-            db.collection("users").document(userId)
-                    .collection("cart").document(product.getArticle())
-                    .set(product)
-                    .addOnSuccessListener(aVoid -> {
-                        Toast.makeText(context, "Товар добавлен в корзину", Toast.LENGTH_SHORT).show();
-                        // После добавления в корзину обновляем UI
-                        cartItems.put(product.getArticle(), product);
-                        holder.addToCartButton.setVisibility(View.GONE);
-                        holder.quantityLayout.setVisibility(View.VISIBLE);
-                        holder.quantityText.setText(String.valueOf(product.getQuantity()));
-                    })
-                    .addOnFailureListener(e -> {
-                        Toast.makeText(context, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                    });
-        });
+        // Карточка обновится из уведомления CartStore: локальная запись приходит в подписку сразу
+        cartStore.add(product)
+                .addOnSuccessListener(aVoid -> {
+                    Toast.makeText(context, "Товар добавлен в корзину", Toast.LENGTH_SHORT).show();
+                })
+                .addOnFailureListener(e -> {
+                    Toast.makeText(context, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                });
+    }
 
-        holder.decreaseQuantityButton.setOnClickListener(v -> {
-            if (auth.getCurrentUser() == null) {
-                Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
-                return;
-            }
+    private void decreaseQuantity(Product product) {
+        if (auth.getCurrentUser() == null) {
+            Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
+            return;
+        }
 
-            Product cartItem = cartItems.get(product.getArticle());
-            if (cartItem != null) {
-                int quantity = cartItem.getQuantity();
-                if (quantity > 1) {
-                    quantity--;
-                    cartItem.setQuantity(quantity);
-                    String userId = auth.getCurrentUser().getUid();
-                    int finalQuantity = quantity;
-                    db.collection("users").document(userId)
-                            .collection("cart").document(product.getArticle())
-                            .set(cartItem)
-                            .addOnSuccessListener(aVoid -> {
-                                holder.quantityText.setText(String.valueOf(finalQuantity));
-                            })
-                            .addOnFailureListener(e -> {
-                                Toast.makeText(context, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                            });
-                } else {
-                    // Если количество становится 0, удаляем из корзины
-                    String userId = auth.getCurrentUser().getUid();
-                    db.collection("users").document(userId)
-                            .collection("cart").document(product.getArticle())
-                            .delete()
-                            .addOnSuccessListener(aVoid -> {
-                                cartItems.remove(product.getArticle());
-                                holder.addToCartButton.setVisibility(View.VISIBLE);
-                                holder.quantityLayout.setVisibility(View.GONE);
-                            })
-                            .addOnFailureListener(e -> {
-                                Toast.makeText(context, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                            });
-                }
-            }
-        });
+        quantityStepper.decrease(product);
+    }
 
-        holder.increaseQuantityButton.setOnClickListener(v -> {
-            if (auth.getCurrentUser() == null) {
-                Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
-                return;
-            }
+    private void increaseQuantity(Product product) {
+        if (auth.getCurrentUser() == null) {
+            Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
+            return;
+        }
 
-            Product cartItem = cartItems.get(product.getArticle());
-            if (cartItem != null) {
-                String userId = auth.getCurrentUser().getUid();
-                // Проверяем доступное количество товара в Firestore
-                db.collection("products")
-                        .whereEqualTo("article", product.getArticle())
-                        .get()
-                        .addOnSuccessListener(queryDocumentSnapshots -> {
-                            if (!queryDocumentSnapshots.isEmpty()) {
-                                Long availableQuantity = queryDocumentSnapshots.getDocuments().get(0).getLong("quantity");
-                                if (availableQuantity != null) {
-                                    int currentQuantity = cartItem.getQuantity();
-                                    int newQuantity = currentQuantity + 1;
-
-                                    if (newQuantity <= availableQuantity) {
-                                        // Если новое количество не превышает доступное, обновляем
-                                        cartItem.setQuantity(newQuantity);
-                                        db.collection("users").document(userId)
-                                                .collection("cart").document(product.getArticle())
-                                                .set(cartItem)
-                                                .addOnSuccessListener(aVoid -> {
-                                                    holder.quantityText.setText(String.valueOf(newQuantity));
-                                                })
-                                                .addOnFailureListener(e -> {
-                                                    Toast.makeText(context, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                                                });
-                                    } else {
-                                        Toast.makeText(context, "Недостаточно товара на складе", Toast.LENGTH_SHORT).show();
-                                    }
-                                } else {
-                                    Toast.makeText(context, "Ошибка: не удалось получить доступное количество", Toast.LENGTH_SHORT).show();
-                                }
-                            } else {
-                                Toast.makeText(context, "Товар не найден в базе данных", Toast.LENGTH_SHORT).show();
-                            }
-                        })
-                        .addOnFailureListener(e -> {
-                            Toast.makeText(context, "Ошибка проверки количества: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                        });
-            }
-        });
+        // В карточке хранится остаток на складе
+        quantityStepper.increase(product, product.getQuantity());
     }
 
     @Override
@@ -270,6 +246,7 @@ public class FavouritesAdapter extends RecyclerView.Adapter<FavouritesAdapter.Fa
         TextView titleTextView, articleTextView, priceTextView, quantityText;
         Button addToCartButton;
         LinearLayout quantityLayout;
+        String boundImage; // Адрес изображения, уже переданный Glide для этой карточки
 
         public FavouritesViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -0,0 +1,147 @@
+package com.example.sorapc;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <summary>
+ * Класс Formatters форматирует цены, даты, артикулы и количества для карточек списков.
+ * Форматтеры создаются один раз, а готовые строки кэшируются: при прокрутке одни и те же цены и даты
+ * повторяются, поэтому onBindViewHolder получает строку из кэша без создания объектов.
+ * Числовые кэши прямого отображения (массивы long и String) не упаковывают ключ в Long.
+ * Вызывается из главного потока.
+ * </summary>
+ */
+
+public final class Formatters {
+
+    private static final DecimalFormat PRICE_FORMAT;
+    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("dd.MM.yyyy", Locale.getDefault());
+    private static final SimpleDateFormat DATE_TIME_FORMAT = new SimpleDateFormat("dd.MM.yyyy HH:mm", Locale.getDefault());
+
+    static {
+        DecimalFormatSymbols symbols = new DecimalFormatSymbols();
+        symbols.setGroupingSeparator(' ');
+        PRICE_FORMAT = new DecimalFormat("#,### ₽", symbols);
+    }
+
+    private static final LongCache prices = new LongCache(512);
+    private static final LongCache priceLabels = new LongCache(512);
+    private static final LongCache totalLabels = new LongCache(128);
+    private static final LongCache dates = new LongCache(256);
+    private static final LongCache dateTimes = new LongCache(256);
+    private static final String[] counts = new String[1000];
+    private static final Map<String, String> articleLabels = new HashMap<>();
+    private static final int MAX_ARTICLE_LABELS = 1024;
+
+    private Formatters() {}
+
+    // "129 990 ₽"
+    public static String price(long price) {
+        String value = prices.get(price);
+        if (value == null) {
+            value = PRICE_FORMAT.format(price);
+            prices.put(price, value);
+        }
+        return value;
+    }
+
+    // "Цена: 129 990 ₽"
+    public static String priceLabel(long price) {
+        String value = priceLabels.get(price);
+        if (value == null) {
+            value = "Цена: " + price(price);
+            priceLabels.put(price, value);
+        }
+        return value;
+    }
+
+    // "Итого: 393 870 ₽"
+    public static String totalLabel(long total) {
+        String value = totalLabels.get(total);
+        if (value == null) {
+            value = "Итого: " + price(total);
+            totalLabels.put(total, value);
+        }
+        return value;
+    }
+
+    // "Артикул: SR-0001"
+    public static String articleLabel(String article) {
+        String value = articleLabels.get(article);
+        if (value == null) {
+            if (articleLabels.size() >= MAX_ARTICLE_LABELS) {
+                articleLabels.clear();
+            }
+            value = "Артикул: " + article;
+            articleLabels.put(article, value);
+        }
+        return value;
+    }
+
+    public static String count(int count) {
+        if (count < 0 || count >= counts.length) return String.valueOf(count);
+        String value = counts[count];
+        if (value == null) {
+            value = String.valueOf(count);
+            counts[count] = value;
+        }
+        return value;
+    }
+
+    // "17.05.2025"
+    public static String date(Date date) {
+        if (date == null) return "";
+        String value = dates.get(date.getTime());
+        if (value == null) {
+            value = DATE_FORMAT.format(date);
+            dates.put(date.getTime(), value);
+        }
+        return value;
+    }
+
+    // "17.05.2025 14:30"
+    public static String dateTime(Date date) {
+        if (date == null) return "";
+        String value = dateTimes.get(date.getTime());
+        if (value == null) {
+            value = DATE_TIME_FORMAT.format(date);
+            dateTimes.put(date.getTime(), value);
+        }
+        return value;
+    }
+
+    // Кэш прямого отображения long -> String: при коллизии старое значение просто вытесняется
+    private static final class LongCache {
+        private final long[] keys;
+        private final String[] values;
+        private final int mask;
+
+        LongCache(int size) {
+            keys = new long[size];
+            values = new String[size];
+            mask = size - 1;
+        }
+
+        String get(long key) {
+            int index = index(key);
+            return values[index] != null && keys[index] == key ? values[index] : null;
+        }
+
+        void put(long key, String value) {
+            int index = index(key);
+            keys[index] = key;
+            values[index] = value;
+        }
+
+        private int index(long key) {
+            int hash = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.example.sorapc;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <summary>
+ * Класс FullTextIndex хранит копию каталога в локальной базе SQLite с полнотекстовым индексом FTS4
+ * по названию, артикулу, описанию и характеристикам.
+ * База переживает перезапуск приложения, поэтому поиск работает сразу после холодного старта и без сети,
+ * а в память поднимаются только найденные товары.
+ * Результаты ранжируются по BM25, который считается по matchinfo(): в SQLite на Android нет FTS5 с функцией bm25().
+ * Изменения товаров приходят от ProductRepository как ProductIndex и записываются одной транзакцией на снимок
+ * в отдельном потоке. Строки, которых не оказалось в первом полном снимке с сервера, удаляются.
+ * </summary>
+ */
+
+public class FullTextIndex extends SQLiteOpenHelper implements ProductIndex {
+
+    private static final String DATABASE_NAME = "product_search.db";
+    private static final int DATABASE_VERSION = 1;
+
+    // Веса столбцов FTS для BM25: название, артикул, описание, характеристики
+    private static final double[] COLUMN_WEIGHTS = {3.0, 2.0, 1.0, 1.5};
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final String SELECT_PRODUCT = "SELECT p.article, p.title, p.price, p.img, p.quantity, p.category, p.sales_count";
+    private static final String FROM_MATCH = " FROM products_fts JOIN products p ON p.id = products_fts.docid"
+            + " WHERE products_fts MATCH ?";
+
+    private static FullTextIndex instance;
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+    private List<Product> pendingWrites = new ArrayList<>();
+    private List<String> pendingDeletes = new ArrayList<>();
+    private long generation = System.currentTimeMillis(); // Метка строк текущей подписки
+    private boolean sweepPending = true;
+
+    private FullTextIndex(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        setWriteAheadLoggingEnabled(true); // Чтение при поиске не ждёт записи снимка
+    }
+
+    public static synchronized FullTextIndex getInstance(Context context) {
+        if (instance == null) {
+            instance = new FullTextIndex(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE products ("
+                + "id INTEGER PRIMARY KEY, article TEXT NOT NULL UNIQUE, title TEXT, price INTEGER, img TEXT, "
+                + "quantity INTEGER, category TEXT, sales_count INTEGER, generation INTEGER, "
+                + "title_key TEXT, article_key TEXT, description_key TEXT, specs_key TEXT)");
+        db.execSQL("CREATE INDEX products_category ON products(category)");
+        // Внешнее содержимое: текст хранится один раз в products, FTS держит только индекс
+        db.execSQL("CREATE VIRTUAL TABLE products_fts USING fts4(content=\"products\", "
+                + "title_key, article_key, description_key, specs_key, tokenize=unicode61)");
+        // Индекс обновляется только при изменении текстовых столбцов, смена цены или остатка его не трогает
+        db.execSQL("CREATE TRIGGER products_bu BEFORE UPDATE OF title_key, article_key, description_key, specs_key ON products BEGIN "
+                + "DELETE FROM products_fts WHERE docid = old.id; END");
+        db.execSQL("CREATE TRIGGER products_bd BEFORE DELETE ON products BEGIN "
+                + "DELETE FROM products_fts WHERE docid = old.id; END");
+        db.execSQL("CREATE TRIGGER products_au AFTER UPDATE OF title_key, article_key, description_key, specs_key ON products BEGIN "
+                + "INSERT INTO products_fts(docid, title_key, article_key, description_key, specs_key) "
+                + "VALUES (new.id, new.title_key, new.article_key, new.description_key, new.specs_key); END");
+        db.execSQL("CREATE TRIGGER products_ai AFTER INSERT ON products BEGIN "
+                + "INSERT INTO products_fts(docid, title_key, article_key, description_key, specs_key) "
+                + "VALUES (new.id, new.title_key, new.article_key, new.description_key, new.specs_key); END");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Локальная база — только кэш каталога, её можно пересоздать и заполнить из следующего снимка
+        db.execSQL("DROP TABLE IF EXISTS products_fts");
+        db.execSQL("DROP TABLE IF EXISTS products");
+        onCreate(db);
+    }
+
+    // Найденные товары без загрузки каталога: по BM25 или по цене, не больше limit штук.
+    // Пустой запрос возвращает товары категории по цене. Вызывается из фонового потока
+    public List<Product> search(String query, String categoryId, PriceRange priceRange, boolean byRelevance,
+                                boolean descending, int limit) {
+        List<Product> result = new ArrayList<>();
+        String match = toMatchExpression(query);
+
+        List<String> args = new ArrayList<>();
+        StringBuilder where = new StringBuilder();
+        if (match != null) {
+            where.append(FROM_MATCH);
+            args.add(match);
+        } else {
+            where.append(" FROM products p WHERE 1");
+        }
+        if (categoryId != null) {
+            where.append(" AND p.category = ?");
+            args.add(categoryId);
+        }
+        if (!priceRange.isAny()) {
+            where.append(" AND p.price BETWEEN ? AND ?");
+            args.add(String.valueOf(priceRange.getMinPrice()));
+            args.add(String.valueOf(priceRange.getMaxPrice()));
+        }
+
+        SQLiteDatabase db = getReadableDatabase();
+        if (!byRelevance || match == null) {
+            String sql = SELECT_PRODUCT + where
+                    + " ORDER BY p.price " + (descending ? "DESC" : "ASC") + " LIMIT " + limit;
+            try (Cursor cursor = db.rawQuery(sql, args.toArray(new String[0]))) {
+                while (cursor.moveToNext()) {
+                    result.add(readProduct(cursor));
+                }
+            }
+            return result;
+        }
+
+        // Оценка считается по всем совпадениям, а товары создаются только для лучших limit строк
+        String sql = SELECT_PRODUCT + ", matchinfo(products_fts, 'pcnalx')" + where;
+        try (Cursor cursor = db.rawQuery(sql, args.toArray(new String[0]))) {
+            long[] ranked = rank(cursor, 7);
+            for (int i = 0; i < ranked.length && i < limit; i++) {
+                cursor.moveToPosition((int) ranked[i]);
+                result.add(readProduct(cursor));
+            }
+        }
+        return result;
+    }
+
+    // Артикулы всех совпадений по убыванию BM25. Вызывается из фонового потока
+    public List<String> rankArticles(String query) {
+        List<String> result = new ArrayList<>();
+        String match = toMatchExpression(query);
+        if (match == null) return result;
+        String sql = "SELECT p.article, matchinfo(products_fts, 'pcnalx')" + FROM_MATCH;
+        try (Cursor cursor = getReadableDatabase().rawQuery(sql, new String[]{match})) {
+            for (long position : rank(cursor, 1)) {
+                cursor.moveToPosition((int) position);
+                result.add(cursor.getString(0));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void onProductAdded(int slot, Product product) {
+        pendingWrites.add(product);
+    }
+
+    @Override
+    public void onProductModified(int slot, Product oldProduct, Product newProduct) {
+        pendingWrites.add(newProduct);
+    }
+
+    @Override
+    public void onProductRemoved(int slot, Product product) {
+        pendingDeletes.add(product.getArticle());
+    }
+
+    @Override
+    public void clear() {
+        // Новая подписка пришлёт весь каталог заново; база остаётся, устаревшие строки удалятся после полного снимка
+        pendingWrites = new ArrayList<>();
+        pendingDeletes = new ArrayList<>();
+        generation = System.currentTimeMillis();
+        sweepPending = true;
+    }
+
+    @Override
+    public void onSnapshotApplied(boolean fromCache) {
+        List<Product> writes = pendingWrites;
+        List<String> deletes = pendingDeletes;
+        long writeGeneration = generation;
+        // Снимок из кэша может быть неполным, по нему удалять строки нельзя
+        boolean sweep = sweepPending && !fromCache;
+        if (sweep) sweepPending = false;
+        if (writes.isEmpty() && deletes.isEmpty() && !sweep) return;
+        pendingWrites = new ArrayList<>();
+        pendingDeletes = new ArrayList<>();
+        writer.execute(() -> write(writes, deletes, writeGeneration, sweep));
+    }
+
+    private void write(List<Product> writes, List<String> deletes, long writeGeneration, boolean sweep) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            SQLiteStatement updateMeta = db.compileStatement("UPDATE products SET title = ?, price = ?, img = ?, "
+                    + "quantity = ?, category = ?, sales_count = ?, generation = ? WHERE article = ?");
+            SQLiteStatement updateText = db.compileStatement("UPDATE products SET title_key = ?, article_key = ?, "
+                    + "description_key = ?, specs_key = ? WHERE article = ? AND (title_key IS NOT ? "
+                    + "OR article_key IS NOT ? OR description_key IS NOT ? OR specs_key IS NOT ?)");
+            SQLiteStatement insert = db.compileStatement("INSERT INTO products (title, price, img, quantity, category, "
+                    + "sales_count, generation, article, title_key, article_key, description_key, specs_key) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            SQLiteStatement delete = db.compileStatement("DELETE FROM products WHERE article = ?");
+
+            for (Product product : writes) {
+                if (product.getArticle() == null) continue;
+                String[] keys = {
+                        SearchIndex.normalize(product.getTitle()),
+                        SearchIndex.normalize(product.getArticle()),
+                        SearchIndex.normalize(product.getDescription()),
+                        SearchIndex.normalize(specsOf(product))
+                };
+                bindMeta(updateMeta, product, writeGeneration);
+                if (updateMeta.executeUpdateDelete() == 0) {
+                    bindMeta(insert, product, writeGeneration);
+                    for (int i = 0; i < keys.length; i++) {
+                        insert.bindString(9 + i, keys[i]);
+                    }
+                    insert.executeInsert();
+                    continue;
+                }
+                // Текстовые столбцы перезаписываются только при изменении, иначе FTS не трогается
+                updateText.clearBindings();
+                for (int i = 0; i < keys.length; i++) {
+                    updateText.bindString(1 + i, keys[i]);
+                    updateText.bindString(6 + i, keys[i]);
+                }
+                updateText.bindString(5, product.getArticle());
+                updateText.executeUpdateDelete();
+            }
+            for (String article : deletes) {
+                if (article == null) continue;
+                delete.bindString(1, article);
+                delete.executeUpdateDelete();
+            }
+            if (sweep) {
+                db.execSQL("DELETE FROM products WHERE generation < ?", new Object[]{writeGeneration});
+            }
+            updateMeta.close();
+            updateText.close();
+            insert.close();
+            delete.close();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Первые 8 параметров одинаковы для UPDATE метаданных и INSERT
+    private static void bindMeta(SQLiteStatement statement, Product product, long writeGeneration) {
+        statement.clearBindings();
+        bindNullable(statement, 1, product.getTitle());
+        statement.bindLong(2, product.getPrice());
+        bindNullable(statement, 3, product.getImg());
+        statement.bindLong(4, product.getQuantity());
+        bindNullable(statement, 5, product.getCategory());
+        statement.bindLong(6, product.getSalesCount());
+        statement.bindLong(7, writeGeneration);
+        statement.bindString(8, product.getArticle());
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value != null) {
+            statement.bindString(index, value);
+        } else {
+            statement.bindNull(index);
+        }
+    }
+
+    private static String specsOf(Product product) {
+        StringBuilder builder = new StringBuilder();
+        for (SpecField field : SpecField.values()) {
+            String value = field.valueOf(product);
+            if (value != null) builder.append(value).append(' ');
+        }
+        return builder.toString();
+    }
+
+    // Каждое слово запроса ищется как префикс: "rtx 407" -> "rtx* 407*"
+    private static String toMatchExpression(String query) {
+        StringBuilder match = new StringBuilder();
+        String normalized = SearchIndex.normalize(query);
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= normalized.length(); i++) {
+            char c = i < normalized.length() ? normalized.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                token.append(c);
+            } else if (token.length() > 0) {
+                if (match.length() > 0) match.append(' ');
+                match.append(token).append('*');
+                token.setLength(0);
+            }
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+
+    // Позиции строк курсора по убыванию BM25; matchinfo лежит в столбце infoColumn
+    private static long[] rank(Cursor cursor, int infoColumn) {
+        long[] keys = new long[cursor.getCount()];
+        int count = 0;
+        while (cursor.moveToNext()) {
+            double score = bm25(cursor.getBlob(infoColumn));
+            // Положительная оценка как double сохраняет порядок своих битов; позиция в младших 20 битах
+            long bits = Double.doubleToLongBits(Math.max(0, score)) & ~0xFFFFFL;
+            keys[count] = bits | count;
+            count++;
+        }
+        Arrays.sort(keys, 0, count);
+        long[] positions = new long[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = keys[count - 1 - i] & 0xFFFFFL;
+        }
+        return positions;
+    }
+
+    // Okapi BM25 по matchinfo('pcnalx'): p фраз, c столбцов, n строк, средние и текущие длины столбцов, попадания
+    private static double bm25(byte[] blob) {
+        IntBuffer info = ByteBuffer.wrap(blob).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phrases = info.get(0);
+        int columns = info.get(1);
+        int rows = info.get(2);
+        double score = 0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns && column < COLUMN_WEIGHTS.length; column++) {
+                int hits = 3 + 2 * columns + 3 * (phrase * columns + column);
+                int termFrequency = info.get(hits);
+                if (termFrequency == 0) continue;
+                int documentsWithTerm = info.get(hits + 2);
+                double idf = Math.log((rows - documentsWithTerm + 0.5) / (documentsWithTerm + 0.5));
+                idf = Math.max(idf, 1e-6); // На маленьком каталоге частые слова не должны давать отрицательный вклад
+                double averageLength = Math.max(1, info.get(3 + column));
+                double length = info.get(3 + columns + column);
+                double saturation = termFrequency * (K1 + 1)
+                        / (termFrequency + K1 * (1 - B + B * length / averageLength));
+                score += COLUMN_WEIGHTS[column] * idf * saturation;
+            }
+        }
+        return score;
+    }
+
+    private static Product readProduct(Cursor cursor) {
+        Product product = new Product();
+        product.setArticle(cursor.getString(0));
+        product.setTitle(cursor.getString(1));
+        product.setPrice(cursor.getLong(2));
+        product.setImg(cursor.getString(3));
+        product.setQuantity(cursor.getInt(4));
+        product.setCategory(cursor.getString(5));
+        product.setSalesCount(cursor.getLong(6));
+        return product;
+    }
+}
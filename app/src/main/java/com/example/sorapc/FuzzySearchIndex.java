@@ -0,0 +1,208 @@
+package com.example.sorapc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <summary>
+ * Класс FuzzySearchIndex реализует нечёткий поиск по названию, артикулу и характеристикам товара.
+ * Текст товара и запрос приводятся к общему виду через TextFolding, запрос дополнительно пробуется в другой раскладке.
+ * Кандидаты отбираются по инвертированному индексу триграмм: товар должен разделять с запросом
+ * не меньше триграмм, чем допускает ограниченное число опечаток. Лучшие по числу общих триграмм кандидаты
+ * проверяются расстоянием редактирования каждого слова запроса до ближайшей подстроки текста товара.
+ * Индекс обновляется репозиторием товаров, методы синхронизированы для чтения из фонового потока.
+ * </summary>
+ */
+
+public class FuzzySearchIndex implements ProductIndex {
+
+    private static final int GRAM = 3;
+    private static final int MAX_CANDIDATES = 200;
+
+    private final Map<String, BitSet> postings = new HashMap<>();
+    private final List<String> textBySlot = new ArrayList<>(); // Текст товара после TextFolding.fold
+
+    // Буферы переиспользуются между запросами
+    private int[] sharedCounts = new int[64];
+    private long[] ranked = new long[64];
+    private int[] distanceRow = new int[64];
+
+    // Допустимое число опечаток для слова длиной length
+    private static int maxEdits(int length) {
+        if (length <= 3) return 0;
+        if (length <= 6) return 1;
+        return 2;
+    }
+
+    public synchronized BitSet search(String query) {
+        BitSet result = new BitSet();
+        if (query == null) return result;
+        Set<String> variants = new LinkedHashSet<>();
+        variants.add(query);
+        variants.add(TextFolding.switchLayout(query));
+        for (String variant : variants) {
+            searchVariant(variant, result);
+        }
+        return result;
+    }
+
+    private void searchVariant(String query, BitSet result) {
+        List<String> tokens = new ArrayList<>();
+        for (String word : query.trim().split("\\s+")) {
+            String token = TextFolding.fold(word);
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        if (tokens.isEmpty()) return;
+
+        // Триграммы запроса и нижняя граница общих триграмм: одна опечатка портит не больше трёх триграмм
+        Set<String> grams = new LinkedHashSet<>();
+        int allowedLoss = 0;
+        for (String token : tokens) {
+            for (int i = 0; i + GRAM <= token.length(); i++) {
+                grams.add(token.substring(i, i + GRAM));
+            }
+            allowedLoss += GRAM * maxEdits(token.length());
+        }
+        if (grams.isEmpty()) return; // Слишком короткий запрос, для него достаточно точного поиска
+        int minShared = Math.max(1, grams.size() - allowedLoss);
+
+        if (sharedCounts.length < textBySlot.size()) {
+            sharedCounts = new int[textBySlot.size()];
+        }
+        BitSet touched = new BitSet();
+        for (String gram : grams) {
+            BitSet posting = postings.get(gram);
+            if (posting == null) continue;
+            for (int slot = posting.nextSetBit(0); slot >= 0; slot = posting.nextSetBit(slot + 1)) {
+                sharedCounts[slot]++;
+                touched.set(slot);
+            }
+        }
+
+        // Кандидаты упорядочиваются по числу общих триграмм: ключ = (число << 32) | слот
+        int candidates = 0;
+        for (int slot = touched.nextSetBit(0); slot >= 0; slot = touched.nextSetBit(slot + 1)) {
+            if (sharedCounts[slot] >= minShared) {
+                if (candidates == ranked.length) {
+                    ranked = Arrays.copyOf(ranked, candidates * 2);
+                }
+                ranked[candidates++] = ((long) sharedCounts[slot] << 32) | slot;
+            }
+            sharedCounts[slot] = 0;
+        }
+        Arrays.sort(ranked, 0, candidates);
+
+        int checked = 0;
+        for (int i = candidates - 1; i >= 0 && checked < MAX_CANDIDATES; i--, checked++) {
+            int slot = (int) ranked[i];
+            String text = textBySlot.get(slot);
+            if (text != null && matchesAll(tokens, text)) {
+                result.set(slot);
+            }
+        }
+    }
+
+    private boolean matchesAll(List<String> tokens, String text) {
+        for (String token : tokens) {
+            if (substringDistance(token, text, maxEdits(token.length())) > maxEdits(token.length())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Наименьшее расстояние Левенштейна от pattern до любой подстроки text; расчёт прекращается, если оно превысило limit
+    private int substringDistance(String pattern, String text, int limit) {
+        int m = pattern.length();
+        if (distanceRow.length <= m) {
+            distanceRow = new int[m + 1];
+        }
+        int[] row = distanceRow;
+        for (int i = 0; i <= m; i++) {
+            row[i] = i;
+        }
+        int best = row[m];
+        for (int j = 1; j <= text.length(); j++) {
+            char c = text.charAt(j - 1);
+            int diagonal = row[0];
+            row[0] = 0; // Совпадение может начинаться с любой позиции текста
+            for (int i = 1; i <= m; i++) {
+                int above = row[i];
+                int cost = pattern.charAt(i - 1) == c ? 0 : 1;
+                row[i] = Math.min(Math.min(row[i - 1] + 1, above + 1), diagonal + cost);
+                diagonal = above;
+            }
+            best = Math.min(best, row[m]);
+            if (best == 0) break;
+        }
+        return best <= limit ? best : limit + 1;
+    }
+
+    @Override
+    public synchronized void onProductAdded(int slot, Product product) {
+        while (textBySlot.size() <= slot) {
+            textBySlot.add(null);
+        }
+        String text = foldProduct(product);
+        textBySlot.set(slot, text);
+        updatePostings(text, slot, true);
+    }
+
+    @Override
+    public synchronized void onProductModified(int slot, Product oldProduct, Product newProduct) {
+        String text = foldProduct(newProduct);
+        if (text.equals(textBySlot.get(slot))) return; // Изменились поля, по которым нет поиска
+        onProductRemoved(slot, oldProduct);
+        onProductAdded(slot, newProduct);
+    }
+
+    @Override
+    public synchronized void onProductRemoved(int slot, Product product) {
+        String text = slot < textBySlot.size() ? textBySlot.get(slot) : null;
+        if (text == null) return;
+        updatePostings(text, slot, false);
+        textBySlot.set(slot, null);
+    }
+
+    @Override
+    public synchronized void clear() {
+        postings.clear();
+        textBySlot.clear();
+    }
+
+    private static String foldProduct(Product product) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(TextFolding.fold(product.getTitle())).append(' ');
+        builder.append(TextFolding.fold(product.getArticle()));
+        for (SpecField field : SpecField.values()) {
+            builder.append(' ').append(TextFolding.fold(field.valueOf(product)));
+        }
+        return builder.toString();
+    }
+
+    private void updatePostings(String text, int slot, boolean add) {
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            String gram = text.substring(i, i + GRAM);
+            if (gram.indexOf(' ') >= 0) continue; // Триграммы не переходят через границу полей
+            BitSet posting = postings.get(gram);
+            if (add) {
+                if (posting == null) {
+                    posting = new BitSet();
+                    postings.put(gram, posting);
+                }
+                posting.set(slot);
+            } else if (posting != null) {
+                posting.clear(slot);
+                if (posting.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+}
@@ -31,6 +31,7 @@ public class MainActivity extends AppCompatActivity {
     private Button gamingPcButton, workstationButton;
     private ImageView gamingPcImage, workstationImage;
     private FirebaseFirestore db;
+    private String topProductsCollection = ProductSummary.COLLECTION; // Откуда сейчас строится витрина
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -98,34 +99,50 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void setupTopProductsPager() {
-        db.collection("products")
-                .orderBy("salesCount", Query.Direction.DESCENDING)
-                .limit(3)
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<Product> topProducts = new ArrayList<>();
+        List<Product> topProducts = new ArrayList<>();
+        TopProductAdapter adapter = new TopProductAdapter(topProducts);
+        topProductsPager.setAdapter(adapter);
+
+        topProductsPager.registerOnPageChangeCallback(new ViewPager2.OnPageChangeCallback() {
+            @Override
+            public void onPageSelected(int position) {
+                super.onPageSelected(position);
+                topProductsPager.postDelayed(() -> {
+                    if (topProducts.isEmpty()) return;
+                    int nextPosition = (position + 1) % topProducts.size();
+                    topProductsPager.setCurrentItem(nextPosition, true);
+                }, 3500);
+            }
+        });
+
+        // Главный экран открывается чаще всего: витрину показываем из кэша, с сервером сверяем не чаще раза в DEFAULT_MAX_AGE_MS
+        loadTopProducts(ProductSummary.COLLECTION, topProducts, adapter);
+        // Пока проекции есть не у всех товаров, витрина строится по полным документам
+        ProductSummary.listCollection(db).addOnSuccessListener(collection -> {
+            if (!collection.equals(ProductSummary.COLLECTION)) {
+                topProductsCollection = collection;
+                loadTopProducts(collection, topProducts, adapter);
+            }
+        });
+    }
+
+    private void loadTopProducts(String collection, List<Product> topProducts, TopProductAdapter adapter) {
+        CacheFirst.get(db.collection(collection)
+                        .orderBy("salesCount", Query.Direction.DESCENDING)
+                        .limit(3),
+                "top_products_" + collection, CacheFirst.DEFAULT_MAX_AGE_MS,
+                (queryDocumentSnapshots, fromCache) -> {
+                    if (!collection.equals(topProductsCollection)) return; // Ответ по проекциям пришёл после переключения
+                    topProducts.clear();
                     for (int i = 0; i < queryDocumentSnapshots.size(); i++) {
-                        Product product = queryDocumentSnapshots.getDocuments().get(i).toObject(Product.class);
-                        if (product != null) {
-                            topProducts.add(product);
+                        ProductSummary summary = DocumentMappers.productSummary(queryDocumentSnapshots.getDocuments().get(i));
+                        if (summary != null) {
+                            topProducts.add(summary.toProduct());
                         }
                     }
-
-                    TopProductAdapter adapter = new TopProductAdapter(topProducts);
-                    topProductsPager.setAdapter(adapter);
-
-                    topProductsPager.registerOnPageChangeCallback(new ViewPager2.OnPageChangeCallback() {
-                        @Override
-                        public void onPageSelected(int position) {
-                            super.onPageSelected(position);
-                            topProductsPager.postDelayed(() -> {
-                                int nextPosition = (position + 1) % topProducts.size();
-                                topProductsPager.setCurrentItem(nextPosition, true);
-                            }, 3500);
-                        }
-                    });
-                })
-                .addOnFailureListener(e -> {
+                    adapter.notifyDataSetChanged();
+                },
+                e -> {
                 });
     }
 }
@@ -2,6 +2,7 @@ package com.example.sorapc;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /**
  * <summary>
@@ -17,6 +18,7 @@ public class Order {
     private long finalTotal;
     private Date date;
     private List<String> articles; // Список артикулов для упрощения поиска
+    private Map<String, Long> sold; // Сколько единиц каждого артикула списано заказом; по нему правила Firestore проверяют списание остатка
 
     public Order() {}
 
@@ -41,4 +43,6 @@ public class Order {
     public void setDate(Date date) { this.date = date; }
     public List<String> getArticles() { return articles; }
     public void setArticles(List<String> articles) { this.articles = articles; }
+    public Map<String, Long> getSold() { return sold; }
+    public void setSold(Map<String, Long> sold) { this.sold = sold; }
 }
\ No newline at end of file
@@ -8,10 +8,9 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
-import java.text.SimpleDateFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * <summary>
@@ -22,6 +21,8 @@ import java.util.List;
 
 public class OrderAdapter extends RecyclerView.Adapter<OrderAdapter.OrderViewHolder> {
     private List<Order> orders;
+    // Текст состава заказа собирается один раз на заказ; заказ из нового снимка — новый объект, старые уходят со сборкой мусора
+    private final Map<Order, String> itemsTextByOrder = new WeakHashMap<>();
 
     public OrderAdapter(List<Order> orders) {
         this.orders = orders;
@@ -37,18 +38,22 @@ public class OrderAdapter extends RecyclerView.Adapter<OrderAdapter.OrderViewHol
     @Override
     public void onBindViewHolder(@NonNull OrderViewHolder holder, int position) {
         Order order = orders.get(position);
-        holder.orderDate.setText(new SimpleDateFormat("dd.MM.yyyy HH:mm").format(order.getDate()));
+        holder.orderDate.setText(Formatters.dateTime(order.getDate()));
+        holder.orderItems.setText(itemsText(order));
+        holder.orderTotal.setText(Formatters.totalLabel(order.getFinalTotal()));
+    }
 
-        StringBuilder itemsText = new StringBuilder();
-        for (Product product : order.getItems()) {
-            itemsText.append(product.getTitle()).append(" (x").append(product.getQuantity()).append(")\n");
+    private String itemsText(Order order) {
+        String text = itemsTextByOrder.get(order);
+        if (text == null) {
+            StringBuilder itemsText = new StringBuilder();
+            for (Product product : order.getItems()) {
+                itemsText.append(product.getTitle()).append(" (x").append(product.getQuantity()).append(")\n");
+            }
+            text = itemsText.toString().trim();
+            itemsTextByOrder.put(order, text);
         }
-        holder.orderItems.setText(itemsText.toString().trim());
-
-        DecimalFormatSymbols symbols = new DecimalFormatSymbols();
-        symbols.setGroupingSeparator(' ');
-        DecimalFormat decimalFormat = new DecimalFormat("#,### ₽", symbols);
-        holder.orderTotal.setText("Итого: " + decimalFormat.format(order.getFinalTotal()));
+        return text;
     }
 
     @Override
@@ -12,7 +12,6 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -74,13 +73,8 @@ public class OrdersHistoryActivity extends AppCompatActivity {
                         return;
                     }
 
-                    orders.clear();
-                    if (value != null) {
-                        for (QueryDocumentSnapshot document : value) {
-                            Order order = document.toObject(Order.class);
-                            orders.add(order);
-                        }
-                    }
+                    DocumentChangeApplier.apply(value, orders,
+                            DocumentMappers::order, orderAdapter);
 
                     if (orders.isEmpty()) {
                         noOrdersText.setVisibility(View.VISIBLE);
@@ -89,8 +83,6 @@ public class OrdersHistoryActivity extends AppCompatActivity {
                         noOrdersText.setVisibility(View.GONE);
                         ordersList.setVisibility(View.VISIBLE);
                     }
-
-                    orderAdapter.notifyDataSetChanged();
                 });
     }
 }
\ No newline at end of file
@@ -0,0 +1,161 @@
+package com.example.sorapc;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * <summary>
+ * Класс PrefixTrie хранит взвешенные фразы для подсказок поиска в префиксном дереве.
+ * Потомки узла лежат в отсортированных массивах символов и ссылок вместо словарей, что экономит память.
+ * Каждый узел помнит наибольший вес в своём поддереве, поэтому лучшие k продолжений префикса
+ * находятся обходом по убыванию веса без просмотра всего поддерева.
+ * Вес фразы меняется на разницу, поэтому дерево обновляется по мере изменения товаров.
+ * Класс не синхронизирован, этим занимается SuggestionIndex.
+ * </summary>
+ */
+
+public class PrefixTrie {
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private static class Node {
+        final Node parent;
+        char[] keys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+        String display; // Фраза в исходном написании, если в узле заканчивается фраза
+        long weight;    // Вес фразы в этом узле
+        long maxWeight; // Наибольший вес в поддереве, включая сам узел
+
+        Node(Node parent) {
+            this.parent = parent;
+        }
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node getOrAddChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) return children[index];
+            int insertAt = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            Node child = new Node(this);
+            newKeys[insertAt] = c;
+            newChildren[insertAt] = child;
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+
+        void removeChild(Node child) {
+            for (int i = 0; i < children.length; i++) {
+                if (children[i] != child) continue;
+                char[] newKeys = new char[keys.length - 1];
+                Node[] newChildren = new Node[children.length - 1];
+                System.arraycopy(keys, 0, newKeys, 0, i);
+                System.arraycopy(children, 0, newChildren, 0, i);
+                System.arraycopy(keys, i + 1, newKeys, i, keys.length - i - 1);
+                System.arraycopy(children, i + 1, newChildren, i, children.length - i - 1);
+                keys = newKeys.length > 0 ? newKeys : NO_KEYS;
+                children = newChildren.length > 0 ? newChildren : NO_CHILDREN;
+                return;
+            }
+        }
+    }
+
+    // Элемент очереди обхода: либо поддерево узла, либо уже готовая фраза узла
+    private static class Entry implements Comparable<Entry> {
+        final Node node;
+        final boolean phrase;
+        final long weight;
+
+        Entry(Node node, boolean phrase) {
+            this.node = node;
+            this.phrase = phrase;
+            this.weight = phrase ? node.weight : node.maxWeight;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byWeight = Long.compare(other.weight, weight);
+            if (byWeight != 0) return byWeight;
+            return Boolean.compare(other.phrase, phrase); // При равном весе фраза раньше поддерева
+        }
+    }
+
+    private final Node root = new Node(null);
+
+    // Изменяет вес фразы key на delta; display задаёт написание фразы в подсказке
+    public void add(String key, String display, long delta) {
+        if (key.isEmpty() || delta == 0) return;
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.getOrAddChild(key.charAt(i));
+        }
+        node.weight += delta;
+        if (node.weight <= 0) {
+            node.weight = 0;
+            node.display = null;
+        } else if (node.display == null) {
+            node.display = display;
+        }
+        updateUpwards(node);
+    }
+
+    public void clear() {
+        root.keys = NO_KEYS;
+        root.children = NO_CHILDREN;
+        root.maxWeight = 0;
+    }
+
+    // Добавляет в out до limit фраз с наибольшим весом, начинающихся с prefix; повторы по написанию пропускаются
+    public void top(String prefix, int limit, Set<String> seen, List<String> out) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(prefix.charAt(i));
+        }
+        if (node == null || node.maxWeight == 0) return;
+
+        PriorityQueue<Entry> queue = new PriorityQueue<>();
+        queue.add(new Entry(node, false));
+        while (!queue.isEmpty() && out.size() < limit) {
+            Entry entry = queue.poll();
+            if (entry.phrase) {
+                if (seen.add(entry.node.display)) {
+                    out.add(entry.node.display);
+                }
+                continue;
+            }
+            if (entry.node.weight > 0) {
+                queue.add(new Entry(entry.node, true));
+            }
+            for (Node child : entry.node.children) {
+                queue.add(new Entry(child, false));
+            }
+        }
+    }
+
+    // Пересчитывает наибольший вес поддерева от узла к корню и убирает опустевшие ветви
+    private void updateUpwards(Node node) {
+        while (node != null) {
+            long max = node.weight;
+            for (Node child : node.children) {
+                max = Math.max(max, child.maxWeight);
+            }
+            node.maxWeight = max;
+            if (max == 0 && node.parent != null) {
+                node.parent.removeChild(node);
+            }
+            node = node.parent;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.sorapc;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.core.content.ContextCompat;
+
+/**
+ * <summary>
+ * Класс PriceHistogramView рисует гистограмму цен над слайдером диапазона.
+ * Столбцы, попадающие в выбранный диапазон, выделяются цветом; данные гистограммы берутся из PriceIndex готовыми.
+ * </summary>
+ */
+
+public class PriceHistogramView extends View {
+
+    private final Paint selectedPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint otherPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private int[] counts = new int[0];
+    private int maxCount;
+    private float selectionFrom = 0f; // Доля от ширины гистограммы, 0..1
+    private float selectionTo = 1f;
+
+    public PriceHistogramView(Context context) {
+        this(context, null);
+    }
+
+    public PriceHistogramView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        selectedPaint.setColor(ContextCompat.getColor(context, R.color.Aquamarine));
+        selectedPaint.setStyle(Paint.Style.FILL);
+        otherPaint.setColor(ContextCompat.getColor(context, R.color.disabled_button_color));
+        otherPaint.setStyle(Paint.Style.FILL);
+    }
+
+    public void setCounts(int[] counts) {
+        this.counts = counts;
+        maxCount = 0;
+        for (int count : counts) {
+            maxCount = Math.max(maxCount, count);
+        }
+        invalidate();
+    }
+
+    public void setSelection(float from, float to) {
+        selectionFrom = from;
+        selectionTo = to;
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (counts.length == 0 || maxCount == 0) return;
+        float left = getPaddingLeft();
+        float bottom = getHeight() - getPaddingBottom();
+        float width = getWidth() - getPaddingLeft() - getPaddingRight();
+        float height = bottom - getPaddingTop();
+        float barWidth = width / counts.length;
+        float gap = barWidth * 0.1f;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) continue;
+            float barLeft = left + i * barWidth;
+            float barTop = bottom - height * counts[i] / maxCount;
+            // Столбец выделяется, если его середина внутри выбранного диапазона
+            float center = (i + 0.5f) / counts.length;
+            Paint paint = center >= selectionFrom && center <= selectionTo ? selectedPaint : otherPaint;
+            canvas.drawRect(barLeft + gap, barTop, barLeft + barWidth - gap, bottom, paint);
+        }
+    }
+}
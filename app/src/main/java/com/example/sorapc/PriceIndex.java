@@ -0,0 +1,182 @@
+package com.example.sorapc;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * <summary>
+ * Класс PriceIndex хранит цены товаров в примитивном массиве long[], отсортированном по возрастанию,
+ * и параллельный массив слотов товаров.
+ * Массивы пересобираются один раз после изменения цен (при первом чтении), а не на каждый запрос,
+ * поэтому выбор диапазона цен — это два двоичных поиска, а обход в порядке цены заменяет сортировку списка.
+ * Вместе с массивами заранее считается гистограмма цен для слайдера.
+ * Индекс обновляется репозиторием товаров, методы синхронизированы для чтения из фонового потока.
+ * </summary>
+ */
+
+public class PriceIndex implements ProductIndex {
+
+    public static final int HISTOGRAM_BUCKETS = 24;
+
+    // Интерфейс для обхода слотов в порядке цены без создания промежуточных списков
+    public interface SlotVisitor {
+        void visit(int slot);
+    }
+
+    // Слот упаковывается в младшие биты ключа, чтобы сортировать цены вместе со слотами одним Arrays.sort(long[])
+    private static final int SLOT_BITS = 24;
+    private static final long SLOT_MASK = (1L << SLOT_BITS) - 1;
+    private static final long MAX_PRICE = Long.MAX_VALUE >>> SLOT_BITS;
+
+    private final BitSet liveSlots = new BitSet();
+    private long[] pricesBySlot = new long[64];
+
+    private long[] sortedPrices = new long[0];
+    private int[] sortedSlots = new int[0];
+    private int size;
+    private final int[] histogram = new int[HISTOGRAM_BUCKETS];
+    private boolean dirty;
+
+    public synchronized int size() {
+        rebuildIfDirty();
+        return size;
+    }
+
+    public synchronized long getMinPrice() {
+        rebuildIfDirty();
+        return size > 0 ? sortedPrices[0] : 0;
+    }
+
+    public synchronized long getMaxPrice() {
+        rebuildIfDirty();
+        return size > 0 ? sortedPrices[size - 1] : 0;
+    }
+
+    // Количество товаров по равным интервалам цен от минимальной до максимальной
+    public synchronized int[] getHistogram() {
+        rebuildIfDirty();
+        return histogram.clone();
+    }
+
+    // Заполняет target слотами товаров с ценой из [minPrice, maxPrice]; при повторных вызовах память не выделяется
+    public synchronized void selectRange(long minPrice, long maxPrice, BitSet target) {
+        rebuildIfDirty();
+        target.clear();
+        int to = upperBound(maxPrice);
+        for (int i = lowerBound(minPrice); i < to; i++) {
+            target.set(sortedSlots[i]);
+        }
+    }
+
+    // Обходит слоты из filter с ценой из [minPrice, maxPrice] в порядке возрастания или убывания цены
+    public synchronized void forEachInRange(long minPrice, long maxPrice, boolean descending, BitSet filter, SlotVisitor visitor) {
+        rebuildIfDirty();
+        int from = lowerBound(minPrice);
+        int to = upperBound(maxPrice);
+        if (descending) {
+            for (int i = to - 1; i >= from; i--) {
+                if (filter.get(sortedSlots[i])) visitor.visit(sortedSlots[i]);
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                if (filter.get(sortedSlots[i])) visitor.visit(sortedSlots[i]);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onProductAdded(int slot, Product product) {
+        if (slot >= pricesBySlot.length) {
+            pricesBySlot = Arrays.copyOf(pricesBySlot, Math.max(slot + 1, pricesBySlot.length * 2));
+        }
+        pricesBySlot[slot] = Math.max(0, Math.min(product.getPrice(), MAX_PRICE));
+        liveSlots.set(slot);
+        dirty = true;
+    }
+
+    @Override
+    public synchronized void onProductModified(int slot, Product oldProduct, Product newProduct) {
+        if (oldProduct.getPrice() == newProduct.getPrice()) return; // Порядок цен не изменился
+        onProductAdded(slot, newProduct);
+    }
+
+    @Override
+    public synchronized void onProductRemoved(int slot, Product product) {
+        if (!liveSlots.get(slot)) return;
+        liveSlots.clear(slot);
+        dirty = true;
+    }
+
+    @Override
+    public synchronized void clear() {
+        liveSlots.clear();
+        size = 0;
+        Arrays.fill(histogram, 0);
+        dirty = false;
+    }
+
+    private void rebuildIfDirty() {
+        if (!dirty) return;
+        dirty = false;
+        size = liveSlots.cardinality();
+        long[] keys = new long[size];
+        int count = 0;
+        for (int slot = liveSlots.nextSetBit(0); slot >= 0; slot = liveSlots.nextSetBit(slot + 1)) {
+            keys[count++] = (pricesBySlot[slot] << SLOT_BITS) | slot;
+        }
+        Arrays.sort(keys);
+
+        if (sortedPrices.length < size) {
+            sortedPrices = new long[size];
+            sortedSlots = new int[size];
+        }
+        for (int i = 0; i < size; i++) {
+            sortedPrices[i] = keys[i] >>> SLOT_BITS;
+            sortedSlots[i] = (int) (keys[i] & SLOT_MASK);
+        }
+
+        Arrays.fill(histogram, 0);
+        if (size == 0) return;
+        long min = sortedPrices[0];
+        long max = sortedPrices[size - 1];
+        for (int i = 0; i < size; i++) {
+            histogram[bucketOf(sortedPrices[i], min, max)]++;
+        }
+    }
+
+    private static int bucketOf(long price, long min, long max) {
+        if (max <= min || price <= min) return 0;
+        if (price >= max) return HISTOGRAM_BUCKETS - 1;
+        return (int) ((double) (price - min) * HISTOGRAM_BUCKETS / (max - min + 1));
+    }
+
+    // Первая позиция с ценой не меньше price
+    private int lowerBound(long price) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedPrices[mid] < price) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Первая позиция с ценой больше price
+    private int upperBound(long price) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedPrices[mid] <= price) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.sorapc;
+
+/**
+ * <summary>
+ * Класс PriceRange описывает выбранный диапазон цен каталога (границы включительно).
+ * Диапазон ANY не ограничивает цену, в том числе у товаров, добавленных после выбора.
+ * </summary>
+ */
+
+public final class PriceRange {
+
+    public static final PriceRange ANY = new PriceRange(0, Long.MAX_VALUE);
+
+    private final long minPrice;
+    private final long maxPrice;
+
+    public PriceRange(long minPrice, long maxPrice) {
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+    }
+
+    public long getMinPrice() { return minPrice; }
+
+    public long getMaxPrice() { return maxPrice; }
+
+    public boolean isAny() {
+        return minPrice <= 0 && maxPrice == Long.MAX_VALUE;
+    }
+}
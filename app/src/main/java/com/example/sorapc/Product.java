@@ -1,5 +1,7 @@
 package com.example.sorapc;
 
+import com.google.firebase.firestore.Exclude;
+
 import java.io.Serializable;
 
 /**
@@ -7,6 +9,8 @@ import java.io.Serializable;
  * Класс Product представляет модель товара для приложения SORAPC.
  * Хранит подробную информацию о товаре, включая характеристики, цену, категорию и статус избранного.
  * Поддерживает сериализацию для передачи между компонентами Android.
+ * Рядом со строками характеристик хранятся их разобранные значения (SpecNormalizer): объём памяти и накопителя,
+ * мощность блока питания, производитель и модель видеокарты, производитель и число ядер процессора.
  * </summary>
  */
 
@@ -28,6 +32,16 @@ public class Product implements Serializable {
     private String category; // Изменено с int на String
     private int quantity;
     private long salesCount;
+    // Разобранные характеристики; 0 или null — значение не удалось определить
+    private int ramGb;
+    private int storageGb;
+    private int psuWatts;
+    private String gpuVendor;
+    private int gpuModel;
+    private String cpuVendor;
+    private int cpuCores;
+    private int specVersion; // Версия SpecNormalizer, которой разобраны характеристики
+    private boolean fromSummary; // Построен из проекции ProductSummary: описания и характеристик нет; в Firestore не пишется
 
     public Product() {}
 
@@ -53,6 +67,30 @@ public class Product implements Serializable {
         this.salesCount = salesCount;
     }
 
+    // Копия товара, чтобы не изменять общий экземпляр из ProductRepository
+    public Product(Product other) {
+        this(other.article, other.caseName, other.cooling, other.cpu, other.description,
+                other.gpu, other.img, other.motherboard, other.power, other.price,
+                other.ram, other.ssd, other.title, other.isFavorite, other.category, other.quantity, other.salesCount);
+        this.ramGb = other.ramGb;
+        this.storageGb = other.storageGb;
+        this.psuWatts = other.psuWatts;
+        this.gpuVendor = other.gpuVendor;
+        this.gpuModel = other.gpuModel;
+        this.cpuVendor = other.cpuVendor;
+        this.cpuCores = other.cpuCores;
+        this.specVersion = other.specVersion;
+        this.fromSummary = other.fromSummary;
+    }
+
+    // Товар с нужной отметкой избранного: при совпадении возвращается он сам, иначе копия
+    public Product withFavorite(boolean favorite) {
+        if (isFavorite == favorite) return this;
+        Product copy = new Product(this);
+        copy.isFavorite = favorite;
+        return copy;
+    }
+
     public String getArticle() { return article; }
     public void setArticle(String article) { this.article = article; }
 
@@ -92,6 +130,11 @@ public class Product implements Serializable {
     public String getTitle() { return title; }
     public void setTitle(String title) { this.title = title; }
 
+    @Exclude
+    public boolean isFromSummary() { return fromSummary; }
+    @Exclude
+    public void setFromSummary(boolean fromSummary) { this.fromSummary = fromSummary; }
+
     public boolean isFavorite() { return isFavorite; }
     public void setFavorite(boolean favorite) { isFavorite = favorite; }
 
@@ -103,4 +146,28 @@ public class Product implements Serializable {
 
     public long getSalesCount() { return salesCount; }
     public void setSalesCount(long salesCount) { this.salesCount = salesCount; }
+
+    public int getRamGb() { return ramGb; }
+    public void setRamGb(int ramGb) { this.ramGb = ramGb; }
+
+    public int getStorageGb() { return storageGb; }
+    public void setStorageGb(int storageGb) { this.storageGb = storageGb; }
+
+    public int getPsuWatts() { return psuWatts; }
+    public void setPsuWatts(int psuWatts) { this.psuWatts = psuWatts; }
+
+    public String getGpuVendor() { return gpuVendor; }
+    public void setGpuVendor(String gpuVendor) { this.gpuVendor = gpuVendor; }
+
+    public int getGpuModel() { return gpuModel; }
+    public void setGpuModel(int gpuModel) { this.gpuModel = gpuModel; }
+
+    public String getCpuVendor() { return cpuVendor; }
+    public void setCpuVendor(String cpuVendor) { this.cpuVendor = cpuVendor; }
+
+    public int getCpuCores() { return cpuCores; }
+    public void setCpuCores(int cpuCores) { this.cpuCores = cpuCores; }
+
+    public int getSpecVersion() { return specVersion; }
+    public void setSpecVersion(int specVersion) { this.specVersion = specVersion; }
 }
\ No newline at end of file
@@ -14,72 +14,106 @@ import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
 
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * <summary>
  * Класс ProductAdapter предоставляет функционал для отображения списка товаров в RecyclerView.
  * Обеспечивает взаимодействие пользователя с товарами, включая добавление в корзину, управление количеством, добавление в избранное и навигацию к деталям товара.
- * Поддерживает фильтрацию и сортировку товаров по различным критериям.
+ * Отфильтрованный и отсортированный список товаров получает от CatalogFilterPipeline.
  * </summary>
  */
 
 public class ProductAdapter extends RecyclerView.Adapter<ProductAdapter.ProductViewHolder> {
 
     private Context context;
-    private List<Product> productList;
     private List<Product> filteredList;
     private FirebaseAuth auth;
     private FirebaseFirestore db;
-    private Map<String, Product> cartItems; // Для хранения товаров в корзине
+    private final CartStore cartStore;
+    private final QuantityStepper quantityStepper;
+    // Перерисовываем только карточки, у которых изменилось количество в корзине
+    private final CartStore.OnCartChangedListener cartListener = changedArticles -> {
+        for (String article : changedArticles) {
+            notifyArticleChanged(article, ProductPayload.CART_QTY);
+        }
+    };
+    private Map<String, Integer> positionsByArticle; // Позиции товаров в отфильтрованном списке
+    private volatile List<Product> currentList = Collections.emptyList(); // Неизменяемая копия показанного списка
+    private final ColorStateList availableTint;
+    private final ColorStateList unavailableTint;
 
-    public ProductAdapter(Context context, List<Product> productList) {
+    public ProductAdapter(Context context) {
         this.context = context;
-        this.productList = productList;
-        this.filteredList = new ArrayList<>(productList);
+        this.filteredList = new ArrayList<>();
         this.auth = FirebaseAuth.getInstance();
         this.db = FirebaseFirestore.getInstance();
-        this.cartItems = new HashMap<>();
-        loadCartItems(); // Загружаем товары из корзины при инициализации
+        this.cartStore = CartStore.getInstance();
+        this.quantityStepper = new QuantityStepper(context);
+        this.positionsByArticle = new HashMap<>();
+        this.availableTint = ColorStateList.valueOf(ContextCompat.getColor(context, R.color.Aquamarine));
+        this.unavailableTint = ColorStateList.valueOf(ContextCompat.getColor(context, R.color.disabled_button_color));
+        setHasStableIds(true);
+        cartStore.addListener(cartListener);
     }
 
-    private void loadCartItems() {
-        if (auth.getCurrentUser() == null) return;
-        String userId = auth.getCurrentUser().getUid();
-        db.collection("users").document(userId)
-                .collection("cart")
-                .addSnapshotListener((value, error) -> {
-                    if (error != null) {
-                        Toast.makeText(context, "Ошибка загрузки корзины: " + error.getMessage(), Toast.LENGTH_SHORT).show();
-                        return;
-                    }
-
-                    cartItems.clear();
-                    for (QueryDocumentSnapshot document : value) {
-                        Product product = document.toObject(Product.class);
-                        cartItems.put(product.getArticle(), product);
-                    }
-                    notifyDataSetChanged(); // Обновляем отображение
-                });
+    // Отписывает адаптер от общей корзины; вызывается из onDestroy экрана
+    public void release() {
+        cartStore.removeListener(cartListener);
+    }
+
+    public void notifyArticleChanged(String article, ProductPayload payload) {
+        Integer position = positionsByArticle.get(article);
+        if (position != null) {
+            notifyItemChanged(position, payload);
+        }
     }
 
     @NonNull
     @Override
     public ProductViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(context).inflate(R.layout.item_product, parent, false);
-        return new ProductViewHolder(view);
+        ProductViewHolder holder = new ProductViewHolder(view);
+        // Обработчики создаются один раз на карточку и берут товар по текущей позиции, а не из привязки
+        holder.favoriteIcon.setOnClickListener(v -> {
+            Product product = productAt(holder);
+            if (product != null) toggleFavorite(holder, product);
+        });
+        holder.addToCartButton.setOnClickListener(v -> {
+            Product product = productAt(holder);
+            if (product != null) addToCart(product);
+        });
+        holder.decreaseQuantityButton.setOnClickListener(v -> {
+            Product product = productAt(holder);
+            if (product != null) decreaseQuantity(product);
+        });
+        holder.increaseQuantityButton.setOnClickListener(v -> {
+            Product product = productAt(holder);
+            if (product != null) increaseQuantity(product);
+        });
+        holder.itemView.setOnClickListener(v -> {
+            Product product = productAt(holder);
+            if (product != null) openDetails(product);
+        });
+        return holder;
+    }
+
+    // Товар, к которому сейчас привязана карточка; null, если карточка уже убрана из списка
+    private Product productAt(ProductViewHolder holder) {
+        int position = holder.getBindingAdapterPosition();
+        return position != RecyclerView.NO_POSITION && position < filteredList.size() ? filteredList.get(position) : null;
     }
 
     @Override
@@ -87,28 +121,65 @@ public class ProductAdapter extends RecyclerView.Adapter<ProductAdapter.ProductV
         Product product = filteredList.get(position);
 
         holder.titleTextView.setText(product.getTitle());
-        holder.articleTextView.setText("Артикул: " + product.getArticle());
+        holder.articleTextView.setText(Formatters.articleLabel(product.getArticle()));
+
+        bindPrice(holder, product);
+
+        // Изображение уже загружено в эту карточку — повторный запрос Glide не нужен
+        if (!Objects.equals(holder.boundImage, product.getImg())) {
+            holder.boundImage = product.getImg();
+            Glide.with(context)
+                    .load(product.getImg())
+                    .placeholder(android.R.drawable.ic_menu_gallery)
+                    .into(holder.productImage);
+        }
+
+        bindFavorite(holder, product);
+        bindCartState(holder, product);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ProductViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+
+        // Частичное обновление: меняем только затронутые представления, без Glide и полной перепривязки
+        Product product = filteredList.get(position);
+        int changes = ProductPayload.collect(payloads);
+        if (ProductPayload.PRICE.in(changes)) {
+            bindPrice(holder, product);
+        }
+        if (ProductPayload.FAVORITE.in(changes)) {
+            bindFavorite(holder, product);
+        }
+        if (ProductPayload.CART_QTY.in(changes) || ProductPayload.STOCK.in(changes)) {
+            bindCartState(holder, product);
+        }
+    }
 
-        DecimalFormatSymbols symbols = new DecimalFormatSymbols();
-        symbols.setGroupingSeparator(' ');
-        DecimalFormat decimalFormat = new DecimalFormat("#,### ₽", symbols);
-        String formattedPrice = decimalFormat.format(product.getPrice());
-        holder.priceTextView.setText("Цена: " + formattedPrice);
+    @Override
+    public long getItemId(int position) {
+        return ArticleIds.of(filteredList.get(position).getArticle());
+    }
 
-        Glide.with(context)
-                .load(product.getImg())
-                .placeholder(android.R.drawable.ic_menu_gallery)
-                .into(holder.productImage);
+    private void bindPrice(ProductViewHolder holder, Product product) {
+        holder.priceTextView.setText(Formatters.priceLabel(product.getPrice()));
+    }
 
+    private void bindFavorite(ProductViewHolder holder, Product product) {
         holder.favoriteIcon.setImageResource(product.isFavorite() ? R.drawable.heart_pressed : R.drawable.heart_unpressed);
+    }
 
+    private void bindCartState(ProductViewHolder holder, Product product) {
         // Проверяем, есть ли товар в корзине
-        Product cartProduct = cartItems.get(product.getArticle());
-        if (cartProduct != null) {
+        int cartQuantity = cartStore.getQuantity(product.getArticle());
+        if (cartQuantity > 0) {
             // Товар в корзине — показываем quantity_layout
             holder.addToCartButton.setVisibility(View.GONE);
             holder.quantityLayout.setVisibility(View.VISIBLE);
-            holder.quantityText.setText(String.valueOf(cartProduct.getQuantity()));
+            holder.quantityText.setText(Formatters.count(cartQuantity));
         } else {
             // Товара нет в корзине — показываем кнопку "В корзину"
             holder.addToCartButton.setVisibility(View.VISIBLE);
@@ -119,166 +190,88 @@ public class ProductAdapter extends RecyclerView.Adapter<ProductAdapter.ProductV
         if (product.getQuantity() <= 0) {
             holder.addToCartButton.setText("Нет товара");
             holder.addToCartButton.setEnabled(false);
-            holder.addToCartButton.setBackgroundTintList(ColorStateList.valueOf(ContextCompat.getColor(context, R.color.disabled_button_color)));
+            holder.addToCartButton.setBackgroundTintList(unavailableTint);
             holder.quantityLayout.setVisibility(View.GONE);
         } else {
             holder.addToCartButton.setText("В корзину");
             holder.addToCartButton.setEnabled(true);
-            holder.addToCartButton.setBackgroundTintList(ColorStateList.valueOf(ContextCompat.getColor(context, R.color.Aquamarine)));
+            holder.addToCartButton.setBackgroundTintList(availableTint);
         }
+    }
 
-        holder.favoriteIcon.setOnClickListener(v -> {
-            if (auth.getCurrentUser() == null) {
-                Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
-                return;
-            }
-
-            product.setFavorite(!product.isFavorite());
-            holder.favoriteIcon.setImageResource(product.isFavorite() ? R.drawable.heart_pressed : R.drawable.heart_unpressed);
-
-            String userId = auth.getCurrentUser().getUid();
-            if (product.isFavorite()) {
-                db.collection("users").document(userId)
-                        .collection("favorites").document(product.getArticle())
-                        .set(product)
-                        .addOnSuccessListener(aVoid -> {
-                        })
-                        .addOnFailureListener(e -> {
-                            Toast.makeText(context, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                        });
-            } else {
-                db.collection("users").document(userId)
-                        .collection("favorites").document(product.getArticle())
-                        .delete()
-                        .addOnSuccessListener(aVoid -> {
-                        })
-                        .addOnFailureListener(e -> {
-                            Toast.makeText(context, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                        });
-            }
-        });
-
-        holder.addToCartButton.setOnClickListener(v -> {
-            if (auth.getCurrentUser() == null) {
-                Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
-                return;
-            }
+    private void toggleFavorite(ProductViewHolder holder, Product product) {
+        if (auth.getCurrentUser() == null) {
+            Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
+            return;
+        }
 
-            if (product.getQuantity() <= 0) {
-                return;
-            }
+        // Общий экземпляр товара не меняем: карточка получает копию с новой отметкой
+        product = product.withFavorite(!product.isFavorite());
+        replace(holder.getBindingAdapterPosition(), product);
+        holder.favoriteIcon.setImageResource(product.isFavorite() ? R.drawable.heart_pressed : R.drawable.heart_unpressed);
 
-            String userId = auth.getCurrentUser().getUid();
-            product.setQuantity(1);
+        String userId = auth.getCurrentUser().getUid();
+        if (product.isFavorite()) {
             db.collection("users").document(userId)
-                    .collection("cart").document(product.getArticle())
-                    .set(product)
+                    .collection("favorites").document(product.getArticle())
+                    .set(ProductSummary.of(product))
                     .addOnSuccessListener(aVoid -> {
-                        // После добавления в корзину обновляем UI
-                        cartItems.put(product.getArticle(), product);
-                        holder.addToCartButton.setVisibility(View.GONE);
-                        holder.quantityLayout.setVisibility(View.VISIBLE);
-                        holder.quantityText.setText(String.valueOf(product.getQuantity()));
                     })
                     .addOnFailureListener(e -> {
                         Toast.makeText(context, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show();
                     });
-        });
+        } else {
+            db.collection("users").document(userId)
+                    .collection("favorites").document(product.getArticle())
+                    .delete()
+                    .addOnSuccessListener(aVoid -> {
+                    })
+                    .addOnFailureListener(e -> {
+                        Toast.makeText(context, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                    });
+        }
+    }
 
-        holder.decreaseQuantityButton.setOnClickListener(v -> {
-            if (auth.getCurrentUser() == null) {
-                Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
-                return;
-            }
-
-            Product cartItem = cartItems.get(product.getArticle());
-            if (cartItem != null) {
-                int quantity = cartItem.getQuantity();
-                if (quantity > 1) {
-                    quantity--;
-                    cartItem.setQuantity(quantity);
-                    String userId = auth.getCurrentUser().getUid();
-                    int finalQuantity = quantity;
-                    db.collection("users").document(userId)
-                            .collection("cart").document(product.getArticle())
-                            .set(cartItem)
-                            .addOnSuccessListener(aVoid -> {
-                                holder.quantityText.setText(String.valueOf(finalQuantity));
-                            })
-                            .addOnFailureListener(e -> {
-                                Toast.makeText(context, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                            });
-                } else {
-                    // Если количество становится 0, удаляем из корзины
-                    String userId = auth.getCurrentUser().getUid();
-                    db.collection("users").document(userId)
-                            .collection("cart").document(product.getArticle())
-                            .delete()
-                            .addOnSuccessListener(aVoid -> {
-                                cartItems.remove(product.getArticle());
-                                holder.addToCartButton.setVisibility(View.VISIBLE);
-                                holder.quantityLayout.setVisibility(View.GONE);
-                            })
-                            .addOnFailureListener(e -> {
-                                Toast.makeText(context, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                            });
-                }
-            }
-        });
+    private void addToCart(Product product) {
+        if (auth.getCurrentUser() == null) {
+            Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
+            return;
+        }
 
-        holder.increaseQuantityButton.setOnClickListener(v -> {
-            if (auth.getCurrentUser() == null) {
-                Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
-                return;
-            }
-
-            Product cartItem = cartItems.get(product.getArticle());
-            if (cartItem != null) {
-                String userId = auth.getCurrentUser().getUid();
-                // Проверяем доступное количество товара в Firestore
-                db.collection("products")
-                        .whereEqualTo("article", product.getArticle())
-                        .get()
-                        .addOnSuccessListener(queryDocumentSnapshots -> {
-                            if (!queryDocumentSnapshots.isEmpty()) {
-                                Long availableQuantity = queryDocumentSnapshots.getDocuments().get(0).getLong("quantity");
-                                if (availableQuantity != null) {
-                                    int currentQuantity = cartItem.getQuantity();
-                                    int newQuantity = currentQuantity + 1;
-
-                                    if (newQuantity <= availableQuantity) {
-                                        // Если новое количество не превышает доступное, обновляем
-                                        cartItem.setQuantity(newQuantity);
-                                        db.collection("users").document(userId)
-                                                .collection("cart").document(product.getArticle())
-                                                .set(cartItem)
-                                                .addOnSuccessListener(aVoid -> {
-                                                    holder.quantityText.setText(String.valueOf(newQuantity));
-                                                })
-                                                .addOnFailureListener(e -> {
-                                                    Toast.makeText(context, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                                                });
-                                    } else {
-                                        Toast.makeText(context, "Недостаточно товара на складе", Toast.LENGTH_SHORT).show();
-                                    }
-                                } else {
-                                    Toast.makeText(context, "Ошибка: не удалось получить доступное количество", Toast.LENGTH_SHORT).show();
-                                }
-                            } else {
-                                Toast.makeText(context, "Товар не найден в базе данных", Toast.LENGTH_SHORT).show();
-                            }
-                        })
-                        .addOnFailureListener(e -> {
-                            Toast.makeText(context, "Ошибка проверки количества: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                        });
-            }
-        });
+        if (product.getQuantity() <= 0) {
+            return;
+        }
 
-        holder.itemView.setOnClickListener(v -> {
-            Intent intent = new Intent(context, DetailsActivity.class);
-            intent.putExtra("product", product);
-            context.startActivity(intent);
-        });
+        // Карточка обновится из уведомления CartStore: локальная запись приходит в подписку сразу
+        cartStore.add(product)
+                .addOnFailureListener(e -> {
+                    Toast.makeText(context, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                });
+    }
+
+    private void decreaseQuantity(Product product) {
+        if (auth.getCurrentUser() == null) {
+            Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        quantityStepper.decrease(product);
+    }
+
+    private void increaseQuantity(Product product) {
+        if (auth.getCurrentUser() == null) {
+            Toast.makeText(context, "Пожалуйста, авторизуйтесь", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        // В карточке хранится остаток на складе
+        quantityStepper.increase(product, product.getQuantity());
+    }
+
+    private void openDetails(Product product) {
+        Intent intent = new Intent(context, DetailsActivity.class);
+        intent.putExtra("product", product);
+        context.startActivity(intent);
     }
 
     @Override
@@ -286,27 +279,31 @@ public class ProductAdapter extends RecyclerView.Adapter<ProductAdapter.ProductV
         return filteredList.size();
     }
 
-    public void filter(String query, String priceSort, String category) {
+    // Список, относительно которого нужно считать следующий DiffUtil; можно читать из фонового потока
+    public List<Product> getCurrentList() {
+        return currentList;
+    }
+
+    // Подменяет товар в показанном списке; currentList заменяется новой копией, чтобы фоновый DiffUtil сравнивал с ней
+    private void replace(int position, Product product) {
+        filteredList.set(position, product);
+        List<Product> list = new ArrayList<>(currentList);
+        list.set(position, product);
+        currentList = Collections.unmodifiableList(list);
+    }
+
+    // Применяет список, отфильтрованный в фоне, вместе с заранее посчитанным DiffUtil
+    public void submit(List<Product> products, DiffUtil.DiffResult diff) {
+        currentList = products;
         filteredList.clear();
-        for (Product product : productList) {
-            if (query.isEmpty() ||
-                    product.getArticle().toLowerCase().contains(query.toLowerCase()) ||
-                    product.getTitle().toLowerCase().contains(query.toLowerCase())) {
-                if (category.equals("Все") ||
-                        (category.equals("0") && "0".equals(product.getCategory())) ||
-                        (category.equals("1") && "1".equals(product.getCategory()))) {
-                    filteredList.add(product);
-                }
-            }
-        }
+        filteredList.addAll(products);
 
-        if (priceSort.equals("По убыванию")) {
-            filteredList.sort((p1, p2) -> Long.compare(p2.getPrice(), p1.getPrice()));
-        } else if (priceSort.equals("По возрастанию")) {
-            filteredList.sort((p1, p2) -> Long.compare(p1.getPrice(), p2.getPrice()));
+        positionsByArticle.clear();
+        for (int i = 0; i < filteredList.size(); i++) {
+            positionsByArticle.put(filteredList.get(i).getArticle(), i);
         }
 
-        notifyDataSetChanged();
+        diff.dispatchUpdatesTo(this);
     }
 
     static class ProductViewHolder extends RecyclerView.ViewHolder {
@@ -314,6 +311,7 @@ public class ProductAdapter extends RecyclerView.Adapter<ProductAdapter.ProductV
         TextView titleTextView, articleTextView, priceTextView, quantityText;
         Button addToCartButton;
         LinearLayout quantityLayout;
+        String boundImage; // Адрес изображения, уже переданный Glide для этой карточки
 
         public ProductViewHolder(@NonNull View itemView) {
             super(itemView);
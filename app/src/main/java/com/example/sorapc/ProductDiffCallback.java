@@ -0,0 +1,60 @@
+package com.example.sorapc;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * <summary>
+ * Класс ProductDiffCallback сравнивает два списка карточек каталога для DiffUtil.
+ * Товары сопоставляются по артикулу, а изменения цены, остатка и избранного передаются как ProductPayload,
+ * чтобы адаптер обновил карточку частично.
+ * </summary>
+ */
+
+public class ProductDiffCallback extends DiffUtil.Callback {
+    private final List<Product> oldList;
+    private final List<Product> newList;
+    private final ProductPayload quantityPayload; // Чем является количество в карточке: остатком или количеством в корзине
+
+    public ProductDiffCallback(List<Product> oldList, List<Product> newList) {
+        this(oldList, newList, ProductPayload.STOCK);
+    }
+
+    public ProductDiffCallback(List<Product> oldList, List<Product> newList, ProductPayload quantityPayload) {
+        this.oldList = oldList;
+        this.newList = newList;
+        this.quantityPayload = quantityPayload;
+    }
+
+    @Override
+    public int getOldListSize() {
+        return oldList.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return newList.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldPosition, int newPosition) {
+        return Objects.equals(oldList.get(oldPosition).getArticle(), newList.get(newPosition).getArticle());
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldPosition, int newPosition) {
+        Product oldProduct = oldList.get(oldPosition);
+        Product newProduct = newList.get(newPosition);
+        if (oldProduct == newProduct) return true;
+        Integer changes = ProductPayload.diff(oldProduct, newProduct, quantityPayload);
+        return changes != null && changes == 0;
+    }
+
+    @Override
+    public Object getChangePayload(int oldPosition, int newPosition) {
+        // null означает полную перепривязку карточки
+        return ProductPayload.diff(oldList.get(oldPosition), newList.get(newPosition), quantityPayload);
+    }
+}
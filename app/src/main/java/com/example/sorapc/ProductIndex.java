@@ -0,0 +1,23 @@
+package com.example.sorapc;
+
+/**
+ * <summary>
+ * Интерфейс ProductIndex описывает индекс над товарами ProductRepository.
+ * Репозиторий сообщает индексу о каждом добавленном, изменённом и удалённом товаре,
+ * поэтому индекс обновляется инкрементально и не перестраивается на каждый снимок коллекции.
+ * Товар адресуется номером слота из ProductSlots.
+ * После применения всего снимка вызывается onSnapshotApplied, чтобы индекс мог обработать изменения одной пачкой.
+ * </summary>
+ */
+
+public interface ProductIndex {
+    void onProductAdded(int slot, Product product);
+
+    void onProductModified(int slot, Product oldProduct, Product newProduct);
+
+    void onProductRemoved(int slot, Product product);
+
+    void clear();
+
+    default void onSnapshotApplied(boolean fromCache) {}
+}
@@ -19,9 +19,12 @@ import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.WriteBatch;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -45,6 +48,25 @@ public class ProductManagementActivity extends AppCompatActivity implements Admi
     private FirebaseFirestore db;
     private List<String> categoryTitles;
     private Map<String, String> categoryMap;
+    private ProductRepository productRepository;
+    private final ProductRepository.OnProductsChangedListener productsListener = new ProductRepository.OnProductsChangedListener() {
+        @Override
+        public void onProductsChanged(List<Product> products) {
+            productList.clear();
+            productList.addAll(products);
+            productAdapter.notifyDataSetChanged();
+            filterProducts();
+            if (productRepository.isFromServer()) {
+                // Проекции для товаров, добавленных до появления productSummaries
+                ProductSummary.backfillIfNeeded(ProductManagementActivity.this, db, products);
+            }
+        }
+
+        @Override
+        public void onProductsError(FirebaseFirestoreException error) {
+            Toast.makeText(ProductManagementActivity.this, "Ошибка обновления товаров: " + error.getMessage(), Toast.LENGTH_SHORT).show();
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -83,13 +105,19 @@ public class ProductManagementActivity extends AppCompatActivity implements Admi
         });
 
         loadCategories();
-        loadProducts();
-        listenForProductsChanges();
+        productRepository = ProductRepository.getInstance();
+        productRepository.addListener(productsListener);
 
         View headerView = findViewById(R.id.header);
         new Header(headerView, this);
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        productRepository.removeListener(productsListener);
+    }
+
     private void loadCategories() {
         db.collection("category")
                 .get()
@@ -292,9 +320,10 @@ public class ProductManagementActivity extends AppCompatActivity implements Admi
                     article, caseName, cooling, cpu, description, gpu, imageUrl, motherboard,
                     power, price, ram, ssd, title, false, categoryId, quantity, 0L
             );
+            SpecNormalizer.normalize(product);
 
-            db.collection("products").document(article)
-                    .set(product)
+            ProductSummary.setWithProduct(db.batch(), db, article, product)
+                    .commit()
                     .addOnSuccessListener(aVoid -> {
                         Toast.makeText(this, "Товар успешно добавлен", Toast.LENGTH_SHORT).show();
                         dialog.dismiss();
@@ -407,21 +436,50 @@ public class ProductManagementActivity extends AppCompatActivity implements Admi
                     article, caseName, cooling, cpu, description, gpu, imageUrl, motherboard,
                     power, price, ram, ssd, title, product.isFavorite(), categoryId, quantity, product.getSalesCount()
             );
+            SpecNormalizer.normalize(updatedProduct);
 
-            db.collection("products").document(article)
-                    .set(updatedProduct)
-                    .addOnSuccessListener(aVoid -> {
-                        Toast.makeText(this, "Товар успешно обновлён", Toast.LENGTH_SHORT).show();
-                        dialog.dismiss();
-                    })
-                    .addOnFailureListener(e -> {
-                        Toast.makeText(this, "Ошибка обновления товара: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                    });
+            saveEditedProduct(updatedProduct, product.getQuantity(), false, dialog);
         });
 
         buttonCancel.setOnClickListener(v -> dialog.dismiss());
     }
 
+    // Остаток меняется приращением, чтобы не затереть продажи, прошедшие пока открыт диалог.
+    // Если проекции ещё нет, она создаётся тем же пакетом (createSummary), а не пропускается
+    private void saveEditedProduct(Product updatedProduct, int seenQuantity, boolean createSummary, AlertDialog dialog) {
+        String article = updatedProduct.getArticle();
+        WriteBatch batch = StockMutations.edit(db.batch(), db, article, updatedProduct, seenQuantity, !createSummary);
+        if (createSummary) {
+            batch.set(ProductSummary.reference(db, article), ProductSummary.of(updatedProduct));
+        }
+        batch.commit()
+                .addOnSuccessListener(aVoid -> {
+                    Toast.makeText(this, "Товар успешно обновлён", Toast.LENGTH_SHORT).show();
+                    dialog.dismiss();
+                })
+                .addOnFailureListener(e -> {
+                    if (!createSummary && StockMutations.isMissingDocument(e)) {
+                        // Проекции ещё нет — создаём её вместе с правкой; если удалён сам товар, повтор вернёт ошибку
+                        saveEditedProduct(updatedProduct, seenQuantity, true, dialog);
+                        return;
+                    }
+                    int decrement = seenQuantity - updatedProduct.getQuantity();
+                    if (!StockMutations.isRejected(e) || decrement <= 0) {
+                        Toast.makeText(this, "Ошибка обновления товара: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    // Отказ правил — нехватка, только если остатка действительно меньше списываемого
+                    StockMutations.findShortage(Collections.singletonMap(article, decrement))
+                            .addOnCompleteListener(read -> {
+                                if (read.isSuccessful() && read.getResult() != null) {
+                                    Toast.makeText(this, "Товар \"" + updatedProduct.getTitle() + "\" успели раскупить: остаток не может стать отрицательным", Toast.LENGTH_SHORT).show();
+                                } else {
+                                    Toast.makeText(this, "Ошибка обновления товара: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                                }
+                            });
+                });
+    }
+
     private void showDeleteConfirmationDialog(Product product) {
         LayoutInflater inflater = LayoutInflater.from(this);
         View dialogView = inflater.inflate(R.layout.dialog_confirm_delete, null);
@@ -447,8 +505,8 @@ public class ProductManagementActivity extends AppCompatActivity implements Admi
 
         buttonDeleteConfirm.setOnClickListener(v -> {
             // Удаляем товар из Firestore
-            db.collection("products").document(product.getArticle())
-                    .delete()
+            ProductSummary.deleteWithProduct(db.batch(), db, product.getArticle())
+                    .commit()
                     .addOnSuccessListener(aVoid -> {
                         Toast.makeText(this, "Товар \"" + product.getTitle() + "\" удалён", Toast.LENGTH_SHORT).show();
                         dialog.dismiss();
@@ -470,40 +528,6 @@ public class ProductManagementActivity extends AppCompatActivity implements Admi
         return article.toString();
     }
 
-    private void loadProducts() {
-        db.collection("products")
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    productList.clear();
-                    for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        Product product = document.toObject(Product.class);
-                        productList.add(product);
-                    }
-                    productAdapter.notifyDataSetChanged();
-                    filterProducts();
-                })
-                .addOnFailureListener(e -> {
-                    Toast.makeText(this, "Ошибка загрузки товаров: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                });
-    }
-
-    private void listenForProductsChanges() {
-        db.collection("products")
-                .addSnapshotListener((value, error) -> {
-                    if (error != null) {
-                        Toast.makeText(this, "Ошибка обновления товаров: " + error.getMessage(), Toast.LENGTH_SHORT).show();
-                        return;
-                    }
-                    productList.clear();
-                    for (QueryDocumentSnapshot document : value) {
-                        Product product = document.toObject(Product.class);
-                        productList.add(product);
-                    }
-                    productAdapter.notifyDataSetChanged();
-                    filterProducts();
-                });
-    }
-
     private void filterProducts() {
         String query = searchEditText.getText().toString().trim();
         productAdapter.filter(query);
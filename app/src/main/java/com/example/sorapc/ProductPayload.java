@@ -0,0 +1,60 @@
+package com.example.sorapc;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * <summary>
+ * Перечисление ProductPayload описывает частичные изменения карточки товара в RecyclerView.
+ * Передаётся в notifyItemChanged(position, payload), чтобы адаптер обновил только затронутое представление
+ * без повторной загрузки изображения и форматирования всей карточки.
+ * Несколько изменений сразу передаются битовой маской (Integer): маски меньше 128 берутся из кэша Integer.valueOf,
+ * поэтому ни сравнение товаров, ни частичная привязка не выделяют память.
+ * </summary>
+ */
+
+public enum ProductPayload {
+    FAVORITE,
+    CART_QTY,
+    STOCK,
+    PRICE;
+
+    // Собирает все частичные изменения из списка payloads, переданного в onBindViewHolder, в битовую маску
+    // без выделения памяти; проверяется через in(mask)
+    public static int collect(List<Object> payloads) {
+        int mask = 0;
+        for (int i = 0; i < payloads.size(); i++) {
+            Object payload = payloads.get(i);
+            if (payload instanceof ProductPayload) {
+                mask |= ((ProductPayload) payload).bit();
+            } else if (payload instanceof Integer) {
+                mask |= (Integer) payload;
+            }
+        }
+        return mask;
+    }
+
+    public boolean in(int mask) {
+        return (mask & bit()) != 0;
+    }
+
+    private int bit() {
+        return 1 << ordinal();
+    }
+
+    // Сравнивает две версии товара и возвращает маску изменений (0 — без изменений);
+    // null означает, что изменилось что-то кроме цены, избранного и количества
+    public static Integer diff(Product oldProduct, Product newProduct, ProductPayload quantityPayload) {
+        if (!Objects.equals(oldProduct.getArticle(), newProduct.getArticle())
+                || !Objects.equals(oldProduct.getTitle(), newProduct.getTitle())
+                || !Objects.equals(oldProduct.getImg(), newProduct.getImg())) {
+            return null;
+        }
+
+        int mask = 0;
+        if (oldProduct.getPrice() != newProduct.getPrice()) mask |= PRICE.bit();
+        if (oldProduct.isFavorite() != newProduct.isFavorite()) mask |= FAVORITE.bit();
+        if (oldProduct.getQuantity() != newProduct.getQuantity()) mask |= quantityPayload.bit();
+        return mask;
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.sorapc;
+
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <summary>
+ * Класс ProductRepository хранит единый для всего приложения набор товаров из коллекции "products".
+ * Держит одну подписку Firestore на коллекцию и раздаёт актуальный список всем экранам через наблюдателей.
+ * Подписка создаётся при появлении первого наблюдателя и снимается, когда наблюдателей не осталось.
+ * После ошибки подписки она пересоздаётся с нарастающей задержкой (RETRY_MIN_MS..RETRY_MAX_MS), пока есть наблюдатели,
+ * чтобы открытые экраны снова начали получать изменения без переподключения.
+ * Снимки применяются инкрементально: десериализуются только изменившиеся документы,
+ * а поисковые индексы (ProductIndex) получают только добавленные, изменённые и удалённые товары.
+ * Все методы вызываются из главного потока.
+ * </summary>
+ */
+
+public class ProductRepository {
+
+    // Интерфейс для получения актуального списка товаров
+    public interface OnProductsChangedListener {
+        void onProductsChanged(List<Product> products);
+
+        default void onProductsError(FirebaseFirestoreException error) {}
+    }
+
+    private static final long RETRY_MIN_MS = 1000;
+    private static final long RETRY_MAX_MS = 60000;
+
+    private static ProductRepository instance;
+
+    private final FirebaseFirestore db;
+    private final List<OnProductsChangedListener> listeners = new ArrayList<>();
+    private final Map<String, Product> productsByArticle = new HashMap<>();
+    private final List<Product> productsInOrder = new ArrayList<>();
+    private final Map<String, String> articlesByDocumentId = new HashMap<>();
+    private final ProductSlots slots = new ProductSlots();
+    private final List<ProductIndex> indexes = new ArrayList<>();
+    private final SearchIndex searchIndex = new SearchIndex();
+    private final CategoryIndex categoryIndex = new CategoryIndex();
+    private final FacetIndex facetIndex = new FacetIndex();
+    private final PriceIndex priceIndex = new PriceIndex();
+    private final FuzzySearchIndex fuzzySearchIndex = new FuzzySearchIndex();
+    private final SuggestionIndex suggestionIndex = new SuggestionIndex();
+    private final SpecValueIndex specValueIndex = new SpecValueIndex();
+    private List<Product> products = Collections.emptyList();
+    private ListenerRegistration registration;
+    private volatile boolean loaded; // Читается и фоновым фильтром каталога
+    private boolean lastSnapshotFromCache;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable resubscribe = this::resubscribe;
+    private long retryDelayMs = RETRY_MIN_MS;
+
+    private ProductRepository() {
+        this.db = FirebaseFirestore.getInstance();
+        indexes.add(searchIndex);
+        indexes.add(categoryIndex);
+        indexes.add(facetIndex);
+        indexes.add(priceIndex);
+        indexes.add(fuzzySearchIndex);
+        indexes.add(suggestionIndex);
+        indexes.add(specValueIndex);
+    }
+
+    public static ProductRepository getInstance() {
+        if (instance == null) {
+            instance = new ProductRepository();
+        }
+        return instance;
+    }
+
+    public void addListener(OnProductsChangedListener listener) {
+        if (listeners.contains(listener)) return;
+        listeners.add(listener);
+        if (loaded) {
+            listener.onProductsChanged(products);
+        }
+        if (registration == null) {
+            // Подписки нет или она упала с ошибкой — новый наблюдатель не ждёт отложенного повтора
+            handler.removeCallbacks(resubscribe);
+            startListening();
+        }
+    }
+
+    public void removeListener(OnProductsChangedListener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) {
+            handler.removeCallbacks(resubscribe);
+            if (registration != null) {
+                registration.remove();
+                registration = null;
+            }
+            // Без подписки набор перестаёт обновляться, поэтому сбрасывается вместе с индексами
+            reset();
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // Последний снимок пришёл с сервера, а не из локального кэша, и содержит полный набор товаров
+    public boolean isFromServer() {
+        return loaded && !lastSnapshotFromCache;
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    public Product getProduct(String article) {
+        return productsByArticle.get(article);
+    }
+
+    // Товар по слоту индекса; может вызываться из фонового потока
+    public Product getProductAt(int slot) {
+        return slots.get(slot);
+    }
+
+    // Слот товара по артикулу или -1; может вызываться из фонового потока
+    public int getSlot(String article) {
+        return slots.slotOf(article);
+    }
+
+    // Слот артикула для наборов вне репозитория (например, избранного), чтобы их BitSet совпадали с индексами каталога.
+    // Слот закрепляется и за товаром, который ещё не загружен
+    public int acquireSlot(String article) {
+        return slots.acquire(article);
+    }
+
+    // Подключает дополнительный индекс, которому нужен Context; уже загруженные товары передаются ему сразу
+    public void addIndex(ProductIndex index) {
+        if (indexes.contains(index)) return;
+        indexes.add(index);
+        if (!loaded) return;
+        for (Product product : productsInOrder) {
+            int slot = slots.slotOf(product.getArticle());
+            if (slot >= 0) {
+                index.onProductAdded(slot, product);
+            }
+        }
+        index.onSnapshotApplied(lastSnapshotFromCache);
+    }
+
+    // Поиск для каталога: запрос по полям (gpu:4070 ram>=32), точное вхождение,
+    // а если его нет — нечёткий поиск с опечатками и транслитерацией. Может вызываться из фонового потока
+    public BitSet search(String query) {
+        if (SpecQuery.looksLikeQuery(query)) {
+            try {
+                return specValueIndex.select(SpecQuery.parse(query));
+            } catch (IllegalArgumentException e) {
+                // Запрос не разобран — ищем его как обычный текст
+            }
+        }
+        BitSet matches = searchIndex.search(query);
+        if (matches.isEmpty()) {
+            matches = fuzzySearchIndex.search(query);
+        }
+        return matches;
+    }
+
+    public SearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    public CategoryIndex getCategoryIndex() {
+        return categoryIndex;
+    }
+
+    public FacetIndex getFacetIndex() {
+        return facetIndex;
+    }
+
+    public PriceIndex getPriceIndex() {
+        return priceIndex;
+    }
+
+    public SuggestionIndex getSuggestionIndex() {
+        return suggestionIndex;
+    }
+
+    // Первый снимок новой подписки снова приходит целиком как ADDED, поэтому до неё набор и индексы пусты.
+    // Закреплённые слоты сохраняются: по ним хранит свои биты FavoritesIndex
+    private void reset() {
+        productsInOrder.clear();
+        productsByArticle.clear();
+        articlesByDocumentId.clear();
+        slots.clear();
+        for (ProductIndex index : indexes) {
+            index.clear();
+        }
+        products = Collections.emptyList();
+        loaded = false;
+        lastSnapshotFromCache = false;
+    }
+
+    private void startListening() {
+        reset();
+        registration = db.collection("products")
+                .addSnapshotListener((value, error) -> {
+                    if (error != null) {
+                        // После ошибки Firestore больше не присылает события, подписку нужно создать заново
+                        registration = null;
+                        handler.postDelayed(resubscribe, retryDelayMs);
+                        retryDelayMs = Math.min(retryDelayMs * 2, RETRY_MAX_MS);
+                        for (OnProductsChangedListener listener : new ArrayList<>(listeners)) {
+                            listener.onProductsError(error);
+                        }
+                        return;
+                    }
+                    if (value == null) return;
+                    retryDelayMs = RETRY_MIN_MS;
+
+                    for (DocumentChange change : value.getDocumentChanges()) {
+                        if (change.getType() == DocumentChange.Type.REMOVED) {
+                            removeProduct(articlesByDocumentId.remove(change.getDocument().getId()));
+                        }
+                    }
+                    DocumentChangeApplier.apply(value, productsInOrder, document -> {
+                        Product product = DocumentMappers.product(document);
+                        // Товары, сохранённые до появления разобранных характеристик, разбираются при загрузке
+                        SpecNormalizer.ensureNormalized(product);
+                        String previousArticle = articlesByDocumentId.put(document.getId(), product.getArticle());
+                        if (previousArticle != null && !previousArticle.equals(product.getArticle())) {
+                            // У документа сменился артикул — старый товар больше не существует
+                            removeProduct(previousArticle);
+                        }
+                        putProduct(product);
+                        return product;
+                    });
+
+                    lastSnapshotFromCache = value.getMetadata().isFromCache();
+                    for (ProductIndex index : indexes) {
+                        index.onSnapshotApplied(lastSnapshotFromCache);
+                    }
+
+                    products = Collections.unmodifiableList(new ArrayList<>(productsInOrder));
+                    loaded = true;
+
+                    for (OnProductsChangedListener listener : new ArrayList<>(listeners)) {
+                        listener.onProductsChanged(products);
+                    }
+                });
+    }
+
+    private void resubscribe() {
+        if (registration == null && !listeners.isEmpty()) {
+            startListening();
+        }
+    }
+
+    private void putProduct(Product product) {
+        Product oldProduct = productsByArticle.put(product.getArticle(), product);
+        int slot = slots.acquire(product.getArticle());
+        slots.set(slot, product);
+        for (ProductIndex index : indexes) {
+            if (oldProduct == null) {
+                index.onProductAdded(slot, product);
+            } else {
+                index.onProductModified(slot, oldProduct, product);
+            }
+        }
+    }
+
+    private void removeProduct(String article) {
+        if (article == null) return;
+        Product oldProduct = productsByArticle.remove(article);
+        if (oldProduct == null) return;
+        int slot = slots.slotOf(article);
+        slots.set(slot, null);
+        for (ProductIndex index : indexes) {
+            index.onProductRemoved(slot, oldProduct);
+        }
+    }
+}
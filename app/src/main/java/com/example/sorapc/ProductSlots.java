@@ -0,0 +1,55 @@
+package com.example.sorapc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <summary>
+ * Класс ProductSlots закрепляет за каждым артикулом постоянный целочисленный слот.
+ * Слоты используются индексами как номера битов в BitSet, поэтому слот никогда не передаётся другому артикулу:
+ * удалённый и снова добавленный товар получает прежний слот.
+ * Методы синхронизированы, чтобы индексы можно было читать из фонового потока.
+ * </summary>
+ */
+
+public class ProductSlots {
+
+    private final Map<String, Integer> slotsByArticle = new HashMap<>();
+    private final List<Product> productsBySlot = new ArrayList<>();
+
+    public synchronized int acquire(String article) {
+        Integer slot = slotsByArticle.get(article);
+        if (slot == null) {
+            slot = productsBySlot.size();
+            slotsByArticle.put(article, slot);
+            productsBySlot.add(null);
+        }
+        return slot;
+    }
+
+    public synchronized int slotOf(String article) {
+        Integer slot = slotsByArticle.get(article);
+        return slot != null ? slot : -1;
+    }
+
+    public synchronized Product get(int slot) {
+        return slot >= 0 && slot < productsBySlot.size() ? productsBySlot.get(slot) : null;
+    }
+
+    public synchronized void set(int slot, Product product) {
+        productsBySlot.set(slot, product);
+    }
+
+    // Убирает товары, но сохраняет закреплённые за артикулами слоты
+    public synchronized void clear() {
+        for (int i = 0; i < productsBySlot.size(); i++) {
+            productsBySlot.set(i, null);
+        }
+    }
+
+    public synchronized int size() {
+        return productsBySlot.size();
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.sorapc;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.AggregateQuerySnapshot;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.List;
+
+/**
+ * <summary>
+ * Класс ProductSummary представляет краткую проекцию товара для списков: название, артикул, цену, изображение,
+ * остаток, категорию и число продаж. Проекции хранятся в коллекции productSummaries под тем же идентификатором,
+ * что и документ товара, и обновляются в одном WriteBatch с ним, поэтому не расходятся с полными данными.
+ * Карточки каталога, избранного и корзины читают только проекции; описание и характеристики
+ * загружаются полным документом лишь в DetailsActivity. Пока проекции есть не у всех товаров
+ * (их пересборка выполняется с устройства администратора), списки читают полные документы (listCollection).
+ * Каждая проекция хранит версию набора полей (summaryVersion), поэтому устаревшие проекции считаются отсутствующими.
+ * </summary>
+ */
+
+public class ProductSummary {
+
+    public static final String COLLECTION = "productSummaries";
+
+    // Увеличивается при изменении набора полей, чтобы администратор пересобрал проекции
+    private static final int VERSION = 2;
+    public static final String VERSION_FIELD = "summaryVersion";
+    // Сколько результат сверки коллекций считается актуальным: товары могут меняться и с других устройств
+    private static final long COMPLETE_TTL_MS = 5 * 60 * 1000;
+    private static final String PREFS = "product_summaries";
+    private static final String KEY_VERSION = "version";
+    // Лимит операций в одном WriteBatch Firestore
+    private static final int BATCH_LIMIT = 500;
+
+    private static boolean backfillRunning;
+    private static long completeCheckedAt = -1; // Когда число актуальных проекций совпало с числом товаров; -1 — не совпало
+
+    private String article;
+    private String title;
+    private String img;
+    private long price;
+    private int quantity;
+    private String category;
+    private long salesCount;
+    private int summaryVersion;
+
+    public ProductSummary() {}
+
+    public static ProductSummary of(Product product) {
+        ProductSummary summary = new ProductSummary();
+        summary.article = product.getArticle();
+        summary.title = product.getTitle();
+        summary.img = product.getImg();
+        summary.price = product.getPrice();
+        summary.quantity = product.getQuantity();
+        summary.category = product.getCategory();
+        summary.salesCount = product.getSalesCount();
+        summary.summaryVersion = VERSION;
+        return summary;
+    }
+
+    // Товар для карточки списка: описание и характеристики не заполнены
+    public Product toProduct() {
+        Product product = new Product();
+        product.setArticle(article);
+        product.setTitle(title);
+        product.setImg(img);
+        product.setPrice(price);
+        product.setQuantity(quantity);
+        product.setCategory(category);
+        product.setSalesCount(salesCount);
+        product.setFromSummary(true);
+        return product;
+    }
+
+    // Карточка построена из проекции, и полные данные нужно загрузить отдельно
+    public static boolean isSummary(Product product) {
+        return product.isFromSummary();
+    }
+
+    // Набор товаров изменился — при следующем обращении коллекции сверяются заново
+    public static void invalidateCompleteness() {
+        completeCheckedAt = -1;
+    }
+
+    public static DocumentReference reference(FirebaseFirestore db, String productId) {
+        return db.collection(COLLECTION).document(productId);
+    }
+
+    // Добавляет в пакет запись товара вместе с его проекцией; прочитанный ранее документ товара больше не актуален
+    public static WriteBatch setWithProduct(WriteBatch batch, FirebaseFirestore db, String productId, Product product) {
+        ArticleLookup.getInstance().invalidate(productId);
+        invalidateCompleteness();
+        return batch.set(db.collection("products").document(productId), product)
+                .set(reference(db, productId), of(product));
+    }
+
+    public static WriteBatch deleteWithProduct(WriteBatch batch, FirebaseFirestore db, String productId) {
+        ArticleLookup.getInstance().invalidate(productId);
+        invalidateCompleteness();
+        return batch.delete(db.collection("products").document(productId))
+                .delete(reference(db, productId));
+    }
+
+    // Коллекция для списков: проекции, если они есть у всех товаров, иначе полные документы products.
+    // Товары, записанные в обход приложения, и ещё не пересобранные проекции не должны пропадать из каталога,
+    // поэтому число товаров сверяется с числом проекций текущей версии агрегирующим запросом count() на сервере.
+    // Совпадение запоминается на COMPLETE_TTL_MS и сбрасывается при записи и удалении товаров с этого устройства
+    public static Task<String> listCollection(FirebaseFirestore db) {
+        if (completeCheckedAt >= 0 && SystemClock.elapsedRealtime() - completeCheckedAt < COMPLETE_TTL_MS) {
+            return Tasks.forResult(COLLECTION);
+        }
+        Task<AggregateQuerySnapshot> products = db.collection("products").count().get(AggregateSource.SERVER);
+        Task<AggregateQuerySnapshot> summaries = db.collection(COLLECTION).whereEqualTo(VERSION_FIELD, VERSION)
+                .count().get(AggregateSource.SERVER);
+        return Tasks.whenAllComplete(products, summaries).continueWith(done -> {
+            // Без сети сверить нельзя — остаёмся на проекциях, проверим при следующем обращении
+            if (!products.isSuccessful() || !summaries.isSuccessful()) return COLLECTION;
+            boolean complete = products.getResult().getCount() == summaries.getResult().getCount();
+            completeCheckedAt = complete ? SystemClock.elapsedRealtime() : -1;
+            return complete ? COLLECTION : "products";
+        });
+    }
+
+    // Пересобирает проекции всех товаров, если на этом устройстве они ещё не собраны текущей версией
+    // или на сервере актуальных проекций меньше, чем товаров (например, товары добавлены через консоль)
+    public static void backfillIfNeeded(Context context, FirebaseFirestore db, List<Product> products) {
+        SharedPreferences preferences = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        if (backfillRunning || products.isEmpty()) return;
+        if (preferences.getInt(KEY_VERSION, 0) != VERSION) {
+            backfill(preferences, db, products);
+            return;
+        }
+        listCollection(db).addOnSuccessListener(collection -> {
+            if (!collection.equals(COLLECTION) && !backfillRunning) {
+                backfill(preferences, db, products);
+            }
+        });
+    }
+
+    private static void backfill(SharedPreferences preferences, FirebaseFirestore db, List<Product> products) {
+        backfillRunning = true;
+        int[] pending = {0};
+        for (int start = 0; start < products.size(); start += BATCH_LIMIT) {
+            WriteBatch batch = db.batch();
+            for (Product product : products.subList(start, Math.min(start + BATCH_LIMIT, products.size()))) {
+                if (product.getArticle() != null) {
+                    batch.set(reference(db, product.getArticle()), of(product));
+                }
+            }
+            pending[0]++;
+            batch.commit()
+                    .addOnSuccessListener(aVoid -> {
+                        if (--pending[0] == 0) {
+                            preferences.edit().putInt(KEY_VERSION, VERSION).apply();
+                            backfillRunning = false;
+                            invalidateCompleteness();
+                        }
+                    })
+                    .addOnFailureListener(e -> backfillRunning = false); // Повторим при следующем снимке
+        }
+    }
+
+    public String getArticle() { return article; }
+    public void setArticle(String article) { this.article = article; }
+
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+
+    public String getImg() { return img; }
+    public void setImg(String img) { this.img = img; }
+
+    public long getPrice() { return price; }
+    public void setPrice(long price) { this.price = price; }
+
+    public int getQuantity() { return quantity; }
+    public void setQuantity(int quantity) { this.quantity = quantity; }
+
+    public String getCategory() { return category; }
+    public void setCategory(String category) { this.category = category; }
+
+    public long getSalesCount() { return salesCount; }
+    public void setSalesCount(long salesCount) { this.salesCount = salesCount; }
+
+    public int getSummaryVersion() { return summaryVersion; }
+    public void setSummaryVersion(int summaryVersion) { this.summaryVersion = summaryVersion; }
+}
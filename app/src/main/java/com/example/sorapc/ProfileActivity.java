@@ -227,7 +227,7 @@ public class ProfileActivity extends AppCompatActivity {
                     cards.clear();
                     if (value != null) {
                         for (QueryDocumentSnapshot document : value) {
-                            Card card = document.toObject(Card.class);
+                            Card card = DocumentMappers.card(document);
                             card.setCardId(document.getId());
                             cards.add(card);
                         }
@@ -666,6 +666,7 @@ public class ProfileActivity extends AppCompatActivity {
 
     private void logOut() {
         auth.signOut();
+        CartStore.getInstance().reset();
         Toast.makeText(ProfileActivity.this, "Вы вышли из аккаунта", Toast.LENGTH_SHORT).show();
         Intent intent = new Intent(ProfileActivity.this, LoginActivity.class);
         startActivity(intent);
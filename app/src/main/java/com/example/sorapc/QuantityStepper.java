@@ -0,0 +1,78 @@
+package com.example.sorapc;
+
+import android.content.Context;
+import android.widget.Toast;
+
+/**
+ * <summary>
+ * Класс QuantityStepper обрабатывает кнопки «+» и «−» количества товара в корзине на карточках и в деталях товара.
+ * Новое количество сразу показывается на всех экранах через CartStore, а серия нажатий записывается
+ * в Firestore одной операцией (CartStore.stageQuantity).
+ * Остаток на складе проверяется по уже загруженным данным — набору товаров ProductRepository или остатку,
+ * который знает экран, — без запроса к Firestore на каждое нажатие. Если экран остатка не знает (корзина),
+ * он берётся из ArticleLookup: из кэша документов или одним чтением документа товара.
+ * Окончательно остаток проверяется при оформлении заказа.
+ * </summary>
+ */
+
+public class QuantityStepper {
+
+    // Экран не знает остатка товара на складе
+    public static final int UNKNOWN_STOCK = -1;
+
+    private final Context context;
+    private final CartStore cartStore;
+
+    public QuantityStepper(Context context) {
+        this.context = context;
+        this.cartStore = CartStore.getInstance();
+    }
+
+    // Увеличивает количество товара в корзине на 1; stock — остаток, известный экрану, или UNKNOWN_STOCK
+    public void increase(Product product, int stock) {
+        String article = product.getArticle();
+        if (cartStore.getQuantity(article) <= 0) return;
+
+        int available = availableStock(article, stock);
+        if (available != UNKNOWN_STOCK) {
+            increaseWithin(product, available);
+            return;
+        }
+        ArticleLookup.getInstance().get(article)
+                .addOnSuccessListener(document -> {
+                    // Документа нет — товар удалён, добавлять больше нечего
+                    Long quantity = document != null ? document.getLong(StockMutations.QUANTITY) : null;
+                    increaseWithin(product, quantity != null ? quantity.intValue() : 0);
+                })
+                .addOnFailureListener(e ->
+                        Toast.makeText(context, "Не удалось проверить остаток: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+    }
+
+    // Количество перечитывается: пока остаток читался, корзина могла измениться
+    private void increaseWithin(Product product, int available) {
+        int quantity = cartStore.getQuantity(product.getArticle());
+        if (quantity <= 0) return;
+        if (quantity + 1 > available) {
+            Toast.makeText(context, "Недостаточно товара на складе", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        cartStore.stageQuantity(product, quantity + 1, this::onWriteFailed);
+    }
+
+    // Уменьшает количество товара в корзине на 1; при количестве 1 товар удаляется из корзины
+    public void decrease(Product product) {
+        int quantity = cartStore.getQuantity(product.getArticle());
+        if (quantity <= 0) return;
+        cartStore.stageQuantity(product, quantity - 1, this::onWriteFailed);
+    }
+
+    // Актуальный остаток берём из общего набора товаров, если он загружен, иначе — известный экрану
+    private int availableStock(String article, int stock) {
+        Product cached = ProductRepository.getInstance().getProduct(article);
+        return cached != null ? cached.getQuantity() : stock;
+    }
+
+    private void onWriteFailed(Exception e) {
+        Toast.makeText(context, "Ошибка: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.sorapc;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * <summary>
+ * Перечисление QueryField описывает поля товара, доступные в языке запросов каталога (SpecQuery).
+ * Текстовое поле задаётся способом получить строку из товара, числовое — способом получить число.
+ * У характеристик число берётся из полей, разобранных SpecNormalizer (ram -> объём в ГБ, gpu -> номер модели),
+ * у остальных текстовых полей — первое число строки, найденное один раз при индексации.
+ * Каждое поле можно назвать несколькими именами, в том числе по-русски.
+ * </summary>
+ */
+
+public enum QueryField {
+    TITLE(Product::getTitle, null, "title", "название"),
+    ARTICLE(Product::getArticle, null, "article", "артикул"),
+    GPU(SpecField.GPU::valueOf, Product::getGpuModel, "gpu", "видеокарта"),
+    GPU_VENDOR(Product::getGpuVendor, null, "gpuvendor", "gpu_vendor"),
+    CPU(SpecField.CPU::valueOf, null, "cpu", "процессор"),
+    CPU_VENDOR(Product::getCpuVendor, null, "cpuvendor", "cpu_vendor"),
+    CORES(null, Product::getCpuCores, "cores", "ядра"),
+    RAM(SpecField.RAM::valueOf, Product::getRamGb, "ram", "память"),
+    SSD(SpecField.SSD::valueOf, Product::getStorageGb, "ssd", "storage", "накопитель"),
+    POWER(SpecField.POWER::valueOf, Product::getPsuWatts, "power", "psu", "бп"),
+    MOTHERBOARD(SpecField.MOTHERBOARD::valueOf, null, "motherboard", "mb", "плата"),
+    COOLING(SpecField.COOLING::valueOf, null, "cooling", "охлаждение"),
+    CASE_NAME(SpecField.CASE_NAME::valueOf, null, "case", "корпус"),
+    PRICE(null, Product::getPrice, "price", "цена"),
+    QUANTITY(null, Product::getQuantity, "stock", "qty", "наличие"),
+    SALES(null, Product::getSalesCount, "sales", "продажи");
+
+    private static final Map<String, QueryField> byName = new HashMap<>();
+
+    static {
+        for (QueryField field : values()) {
+            for (String name : field.names) {
+                byName.put(name, field);
+            }
+        }
+    }
+
+    private final Function<Product, String> text;
+    private final ToLongFunction<Product> number;
+    private final String[] names;
+
+    QueryField(Function<Product, String> text, ToLongFunction<Product> number, String... names) {
+        this.text = text;
+        this.number = number;
+        this.names = names;
+    }
+
+    // Поле по имени из запроса без учёта регистра или null
+    public static QueryField byName(String name) {
+        return byName.get(name.toLowerCase());
+    }
+
+    public boolean isText() {
+        return text != null;
+    }
+
+    public String textOf(Product product) {
+        return text != null ? text.apply(product) : null;
+    }
+
+    public boolean hasNumber() {
+        return number != null;
+    }
+
+    public long numberOf(Product product) {
+        return number.applyAsLong(product);
+    }
+}
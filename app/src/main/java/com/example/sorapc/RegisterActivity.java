@@ -14,6 +14,7 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseAuthUserCollisionException;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.FirebaseFirestore;
 
@@ -191,7 +192,9 @@ public class RegisterActivity extends AppCompatActivity {
         userData.put("phone", phone);
         userData.put("role", "Клиент");
 
-        checkEmailExists(email);
+        // Профили пользователей закрыты правилами Firestore до входа, а Authentication не раскрывает,
+        // занята ли почта, поэтому повтор почты обнаруживается при создании аккаунта
+        sendVerificationCode();
     }
 
     private boolean isValidPassword(String password) {
@@ -212,28 +215,6 @@ public class RegisterActivity extends AppCompatActivity {
         return false;
     }
 
-    private void checkEmailExists(String email) {
-        db.collection("users")
-                .whereEqualTo("email", email)
-                .get()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful()) {
-                        if (!task.getResult().isEmpty()) {
-                            Toast.makeText(RegisterActivity.this,
-                                    "Пользователь с такой почтой уже существует",
-                                    Toast.LENGTH_SHORT).show();
-                        } else {
-                            // Отправляем код подтверждения перед регистрацией
-                            sendVerificationCode();
-                        }
-                    } else {
-                        Toast.makeText(RegisterActivity.this,
-                                "Ошибка проверки email: " + task.getException().getMessage(),
-                                Toast.LENGTH_SHORT).show();
-                    }
-                });
-    }
-
     private void sendVerificationCode() {
         generatedCode = String.valueOf(new Random().nextInt(900000) + 100000);
 
@@ -355,6 +336,11 @@ public class RegisterActivity extends AppCompatActivity {
                                         dialog.dismiss();
                                     });
                         }
+                    } else if (task.getException() instanceof FirebaseAuthUserCollisionException) {
+                        Toast.makeText(RegisterActivity.this,
+                                "Пользователь с такой почтой уже существует",
+                                Toast.LENGTH_SHORT).show();
+                        dialog.dismiss();
                     } else {
                         Toast.makeText(RegisterActivity.this,
                                 "Ошибка регистрации: " + task.getException().getMessage(),
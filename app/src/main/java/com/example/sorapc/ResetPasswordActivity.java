@@ -11,12 +11,11 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.firestore.FirebaseFirestore;
 
 /**
  * <summary>
  * Класс ResetPasswordActivity предоставляет функционал для восстановления пароля пользователя.
- * Реализует проверку существования email в базе данных Firebase Firestore и отправку письма для сброса пароля через Firebase Authentication.
+ * Отправляет письмо для сброса пароля через Firebase Authentication.
  * </summary>
  */
 
@@ -26,7 +25,6 @@ public class ResetPasswordActivity extends AppCompatActivity {
     private Button sendLetterBtn;
     private ImageView backIcon;
     private FirebaseAuth auth;
-    private FirebaseFirestore db;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -34,7 +32,6 @@ public class ResetPasswordActivity extends AppCompatActivity {
         setContentView(R.layout.activity_reset_password);
 
         auth = FirebaseAuth.getInstance();
-        db = FirebaseFirestore.getInstance();
 
         backIcon = findViewById(R.id.back_icon);
         emailEt = findViewById(R.id.email_et2);
@@ -63,26 +60,15 @@ public class ResetPasswordActivity extends AppCompatActivity {
             return;
         }
 
-        db.collection("users")
-                .whereEqualTo("email", email)
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    if (queryDocumentSnapshots.isEmpty()) {
-                        Toast.makeText(ResetPasswordActivity.this, "Пользователя с такой почтой не существует!", Toast.LENGTH_SHORT).show();
-                        return;
-                    }
-
-                    auth.sendPasswordResetEmail(email)
-                            .addOnSuccessListener(aVoid -> {
-                                Toast.makeText(ResetPasswordActivity.this, "Письмо для сброса пароля отправлено на почту", Toast.LENGTH_LONG).show();
-                                finish();
-                            })
-                            .addOnFailureListener(e -> {
-                                Toast.makeText(ResetPasswordActivity.this, "Ошибка отправки письма: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                            });
+        // Профили пользователей закрыты правилами Firestore до входа, а Authentication не сообщает,
+        // есть ли аккаунт с такой почтой, поэтому письмо отправляется без предварительной проверки
+        auth.sendPasswordResetEmail(email)
+                .addOnSuccessListener(aVoid -> {
+                    Toast.makeText(ResetPasswordActivity.this, "Если аккаунт с такой почтой существует, письмо для сброса пароля отправлено", Toast.LENGTH_LONG).show();
+                    finish();
                 })
                 .addOnFailureListener(e -> {
-                    Toast.makeText(ResetPasswordActivity.this, "Ошибка проверки почты: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                    Toast.makeText(ResetPasswordActivity.this, "Ошибка отправки письма: " + e.getMessage(), Toast.LENGTH_SHORT).show();
                 });
     }
 }
\ No newline at end of file
@@ -14,9 +14,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
 
-import java.text.SimpleDateFormat;
 import java.util.List;
-import java.util.Locale;
 
 /**
  * <summary>
@@ -53,7 +51,21 @@ public class ReviewAdapter extends RecyclerView.Adapter<ReviewAdapter.ReviewView
     @Override
     public ReviewViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_review, parent, false);
-        return new ReviewViewHolder(view);
+        ReviewViewHolder holder = new ReviewViewHolder(view);
+        // Обработчики создаются один раз на карточку и берут отзыв по текущей позиции, а не из привязки
+        holder.editReviewIcon.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position != RecyclerView.NO_POSITION && actionListener != null) {
+                actionListener.onEditReview(reviews.get(position), position);
+            }
+        });
+        holder.deleteReviewIcon.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position != RecyclerView.NO_POSITION && actionListener != null) {
+                actionListener.onDeleteReview(reviews.get(position), position);
+            }
+        });
+        return holder;
     }
 
     @Override
@@ -71,33 +83,18 @@ public class ReviewAdapter extends RecyclerView.Adapter<ReviewAdapter.ReviewView
         holder.userName.setText(review.getUserName() != null ? review.getUserName() : "Аноним");
         holder.reviewText.setText(review.getText());
         holder.ratingBar.setRating(review.getRating());
-        holder.dateText.setText(new SimpleDateFormat("dd.MM.yyyy", Locale.getDefault()).format(review.getDate()));
+        holder.dateText.setText(Formatters.date(review.getDate()));
 
         if (isAdminMode) {
             holder.reviewActions.setVisibility(View.VISIBLE);
             holder.editReviewIcon.setVisibility(View.GONE);
             holder.deleteReviewIcon.setVisibility(View.VISIBLE);
-            holder.deleteReviewIcon.setOnClickListener(v -> {
-                if (actionListener != null) {
-                    actionListener.onDeleteReview(review, position);
-                }
-            });
         } else {
             String currentUserId = auth.getCurrentUser() != null ? auth.getCurrentUser().getUid() : null;
             if (currentUserId != null && currentUserId.equals(review.getUserId())) {
                 holder.reviewActions.setVisibility(View.VISIBLE);
                 holder.editReviewIcon.setVisibility(View.VISIBLE);
                 holder.deleteReviewIcon.setVisibility(View.VISIBLE);
-                holder.editReviewIcon.setOnClickListener(v -> {
-                    if (actionListener != null) {
-                        actionListener.onEditReview(review, position);
-                    }
-                });
-                holder.deleteReviewIcon.setOnClickListener(v -> {
-                    if (actionListener != null) {
-                        actionListener.onDeleteReview(review, position);
-                    }
-                });
             } else {
                 holder.reviewActions.setVisibility(View.GONE);
             }
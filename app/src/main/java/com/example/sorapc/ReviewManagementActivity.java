@@ -85,7 +85,7 @@ public class ReviewManagementActivity extends AppCompatActivity implements Revie
                                 .get()
                                 .addOnSuccessListener(reviewSnapshots -> {
                                     for (QueryDocumentSnapshot reviewDoc : reviewSnapshots) {
-                                        Review review = reviewDoc.toObject(Review.class);
+                                        Review review = DocumentMappers.review(reviewDoc);
                                         review.setReviewId(reviewDoc.getId()); // Устанавливаем ID отзыва
                                         review.setProductId(productId); // Сохраняем ID продукта
                                         review.setProductName(productName); // Устанавливаем название продукта
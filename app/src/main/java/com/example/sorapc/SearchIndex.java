@@ -0,0 +1,173 @@
+package com.example.sorapc;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <summary>
+ * Класс SearchIndex реализует инвертированный индекс n-грамм по названию и артикулу товара.
+ * Для каждой подстроки длиной от 1 до 3 символов хранится BitSet слотов товаров, в которых она встречается,
+ * поэтому короткий запрос находится одним поиском по словарю, а длинный — пересечением списков триграмм
+ * с последующей проверкой кандидатов.
+ * Если запрос дополняет предыдущий, фильтруется только предыдущий результат.
+ * Индекс обновляется репозиторием товаров, методы синхронизированы для чтения из фонового потока.
+ * </summary>
+ */
+
+public class SearchIndex implements ProductIndex {
+
+    private static final int MAX_GRAM = 3;
+
+    private final Map<String, BitSet> postings = new HashMap<>();
+    private final BitSet liveSlots = new BitSet();
+    private final List<String[]> fieldsBySlot = new ArrayList<>(); // Нормализованные название и артикул
+
+    private long version;
+    private String lastQuery;
+    private BitSet lastResult;
+    private long lastVersion = -1;
+
+    // Приводит строку к виду для поиска: нижний регистр, ё -> е, одиночные пробелы без краёв
+    public static String normalize(String text) {
+        if (text == null) return "";
+        StringBuilder builder = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = builder.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                builder.append(' ');
+                pendingSpace = false;
+            }
+            c = Character.toLowerCase(c);
+            builder.append(c == 'ё' ? 'е' : c);
+        }
+        return builder.toString();
+    }
+
+    public synchronized BitSet search(String query) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty()) {
+            return (BitSet) liveSlots.clone();
+        }
+
+        // Запрос дополняет предыдущий и индекс с тех пор не менялся — сужаем прошлый результат
+        boolean refining = lastQuery != null && !lastQuery.isEmpty() && lastVersion == version
+                && normalized.startsWith(lastQuery);
+        if (refining && normalized.length() == lastQuery.length()) {
+            return (BitSet) lastResult.clone();
+        }
+
+        BitSet result;
+        if (normalized.length() <= MAX_GRAM) {
+            // Все подстроки до трёх символов проиндексированы, проверка не нужна
+            BitSet posting = postings.get(normalized);
+            result = posting != null ? (BitSet) posting.clone() : new BitSet();
+        } else {
+            result = refining ? (BitSet) lastResult.clone() : null;
+            int start = refining ? Math.max(0, lastQuery.length() - MAX_GRAM + 1) : 0;
+            for (int i = start; i + MAX_GRAM <= normalized.length(); i++) {
+                BitSet posting = postings.get(normalized.substring(i, i + MAX_GRAM));
+                if (posting == null) {
+                    result = new BitSet();
+                    break;
+                }
+                if (result == null) {
+                    result = (BitSet) posting.clone();
+                } else {
+                    result.and(posting);
+                }
+                if (result.isEmpty()) break;
+            }
+            if (result == null) result = new BitSet();
+
+            // Совпадение всех триграмм ещё не означает вхождение подстроки целиком
+            for (int slot = result.nextSetBit(0); slot >= 0; slot = result.nextSetBit(slot + 1)) {
+                String[] fields = fieldsBySlot.get(slot);
+                if (!fields[0].contains(normalized) && !fields[1].contains(normalized)) {
+                    result.clear(slot);
+                }
+            }
+        }
+
+        lastQuery = normalized;
+        lastResult = result;
+        lastVersion = version;
+        return (BitSet) result.clone();
+    }
+
+    @Override
+    public synchronized void onProductAdded(int slot, Product product) {
+        while (fieldsBySlot.size() <= slot) {
+            fieldsBySlot.add(null);
+        }
+        String[] fields = {normalize(product.getTitle()), normalize(product.getArticle())};
+        fieldsBySlot.set(slot, fields);
+        for (String field : fields) {
+            updatePostings(field, slot, true);
+        }
+        liveSlots.set(slot);
+        version++;
+    }
+
+    @Override
+    public synchronized void onProductModified(int slot, Product oldProduct, Product newProduct) {
+        String[] fields = fieldsBySlot.get(slot);
+        if (fields != null
+                && fields[0].equals(normalize(newProduct.getTitle()))
+                && fields[1].equals(normalize(newProduct.getArticle()))) {
+            return; // Изменились поля, по которым нет поиска
+        }
+        onProductRemoved(slot, oldProduct);
+        onProductAdded(slot, newProduct);
+    }
+
+    @Override
+    public synchronized void onProductRemoved(int slot, Product product) {
+        String[] fields = slot < fieldsBySlot.size() ? fieldsBySlot.get(slot) : null;
+        if (fields == null) return;
+        for (String field : fields) {
+            updatePostings(field, slot, false);
+        }
+        fieldsBySlot.set(slot, null);
+        liveSlots.clear(slot);
+        version++;
+    }
+
+    @Override
+    public synchronized void clear() {
+        postings.clear();
+        liveSlots.clear();
+        fieldsBySlot.clear();
+        lastQuery = null;
+        lastResult = null;
+        version++;
+    }
+
+    private void updatePostings(String field, int slot, boolean add) {
+        for (int length = 1; length <= MAX_GRAM; length++) {
+            for (int i = 0; i + length <= field.length(); i++) {
+                String gram = field.substring(i, i + length);
+                BitSet posting = postings.get(gram);
+                if (add) {
+                    if (posting == null) {
+                        posting = new BitSet();
+                        postings.put(gram, posting);
+                    }
+                    posting.set(slot);
+                } else if (posting != null) {
+                    posting.clear(slot);
+                    if (posting.isEmpty()) {
+                        postings.remove(gram);
+                    }
+                }
+            }
+        }
+    }
+}
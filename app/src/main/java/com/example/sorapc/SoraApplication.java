@@ -0,0 +1,37 @@
+package com.example.sorapc;
+
+import android.app.Application;
+
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.PersistentCacheSettings;
+
+/**
+ * <summary>
+ * Класс SoraApplication настраивает Firestore до первого обращения из активностей:
+ * задаёт размер постоянного кэша на диске и включает автоматическое создание локальных индексов,
+ * чтобы запросы к кэшу (Source.CACHE, офлайн-режим) выполнялись по индексу, а не полным перебором документов.
+ * Настройки можно применить только один раз и только до любого другого вызова FirebaseFirestore.
+ * </summary>
+ */
+
+public class SoraApplication extends Application {
+
+    // Каталог с изображениями-ссылками, отзывами и заказами помещается с запасом
+    private static final long CACHE_SIZE_BYTES = 100L * 1024 * 1024;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        FirebaseFirestoreSettings settings = new FirebaseFirestoreSettings.Builder(db.getFirestoreSettings())
+                .setLocalCacheSettings(PersistentCacheSettings.newBuilder()
+                        .setSizeBytes(CACHE_SIZE_BYTES)
+                        .build())
+                .build();
+        db.setFirestoreSettings(settings);
+        if (db.getPersistentCacheIndexManager() != null) {
+            db.getPersistentCacheIndexManager().enableIndexAutoCreation();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.sorapc;
+
+import java.util.function.Function;
+
+/**
+ * <summary>
+ * Перечисление SpecField описывает поля характеристик сборки, по которым строятся фильтры каталога.
+ * Хранит подпись поля для интерфейса и способ получить значение из товара.
+ * </summary>
+ */
+
+public enum SpecField {
+    GPU("Видеокарта", Product::getGpu),
+    CPU("Процессор", Product::getCpu),
+    RAM("Оперативная память", Product::getRam),
+    SSD("Накопитель", Product::getSsd),
+    POWER("Блок питания", Product::getPower),
+    MOTHERBOARD("Материнская плата", Product::getMotherboard),
+    COOLING("Охлаждение", Product::getCooling),
+    CASE_NAME("Корпус", Product::getCaseName);
+
+    private final String title;
+    private final Function<Product, String> getter;
+
+    SpecField(String title, Function<Product, String> getter) {
+        this.title = title;
+        this.getter = getter;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String valueOf(Product product) {
+        return getter.apply(product);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.sorapc;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <summary>
+ * Класс SpecNormalizer разбирает строки характеристик товара в типизированные поля Product:
+ * "32 GB DDR5" -> 32 ГБ памяти, "1 ТБ NVMe + 512 ГБ" -> 1536 ГБ накопителя, "750W Gold" -> 750 Вт,
+ * "GeForce RTX 4070" -> nvidia 4070, "AMD Ryzen 7 7800X3D, 8 ядер" -> amd, 8 ядер.
+ * Разбор выполняется при сохранении товара и при загрузке снимка, если товар разобран другой версией правил,
+ * после чего сравнения и сортировка по характеристикам работают с числами, а не со строками.
+ * </summary>
+ */
+
+public final class SpecNormalizer {
+
+    // Увеличивается при изменении правил разбора, чтобы загруженные товары разобрались заново
+    public static final int VERSION = 1;
+
+    private static final Pattern MODULES = Pattern.compile("(\\d+)\\s*[xх×*]\\s*(\\d+)\\s*(gb|гб|g|г)\\b");
+    private static final Pattern CAPACITY = Pattern.compile("(\\d+(?:[.,]\\d+)?)\\s*(tb|тб|gb|гб)");
+    private static final Pattern WATTS = Pattern.compile("(\\d+)\\s*(w|вт)\\b");
+    private static final Pattern CORES = Pattern.compile("(\\d+)\\s*-?\\s*(ядер|ядра|ядро|cores?|c\\b|c/)");
+    private static final Pattern MODEL_NUMBER = Pattern.compile("(?<!\\d)(\\d{3,5})(?!\\d)(?!\\s*(gb|гб|mb|мб|mhz|мгц|w|вт))");
+    private static final Pattern FIRST_NUMBER = Pattern.compile("(\\d+)");
+
+    private SpecNormalizer() {
+    }
+
+    // Разбирает характеристики, только если товар ещё не разобран текущей версией правил
+    public static void ensureNormalized(Product product) {
+        if (product.getSpecVersion() != VERSION) {
+            normalize(product);
+        }
+    }
+
+    public static void normalize(Product product) {
+        product.setRamGb(parseRamGb(product.getRam()));
+        product.setStorageGb(parseStorageGb(product.getSsd()));
+        product.setPsuWatts(parsePsuWatts(product.getPower()));
+        String gpu = SearchIndex.normalize(product.getGpu());
+        product.setGpuVendor(parseGpuVendor(gpu));
+        product.setGpuModel(parseModelNumber(gpu));
+        String cpu = SearchIndex.normalize(product.getCpu());
+        product.setCpuVendor(parseCpuVendor(cpu));
+        product.setCpuCores(parseCores(cpu));
+        product.setSpecVersion(VERSION);
+    }
+
+    static int parseRamGb(String text) {
+        String value = SearchIndex.normalize(text);
+        Matcher modules = MODULES.matcher(value);
+        if (modules.find()) {
+            // "2x16 ГБ" — суммарный объём модулей
+            return parseIntSafe(modules.group(1)) * parseIntSafe(modules.group(2));
+        }
+        Matcher capacity = CAPACITY.matcher(value);
+        if (capacity.find()) {
+            return toGigabytes(capacity.group(1), capacity.group(2));
+        }
+        return firstNumber(value);
+    }
+
+    static int parseStorageGb(String text) {
+        String value = SearchIndex.normalize(text);
+        // Несколько накопителей складываются: "1 ТБ NVMe + 2 ТБ HDD" -> 3072
+        Matcher capacity = CAPACITY.matcher(value);
+        int total = 0;
+        while (capacity.find()) {
+            total += toGigabytes(capacity.group(1), capacity.group(2));
+        }
+        return total > 0 ? total : firstNumber(value);
+    }
+
+    static int parsePsuWatts(String text) {
+        String value = SearchIndex.normalize(text);
+        Matcher watts = WATTS.matcher(value);
+        if (watts.find()) {
+            return parseIntSafe(watts.group(1));
+        }
+        // Без единиц мощностью считаем первое число, похожее на ватты: "Gold 750" -> 750
+        Matcher number = FIRST_NUMBER.matcher(value);
+        while (number.find()) {
+            int candidate = parseIntSafe(number.group(1));
+            if (candidate >= 200) return candidate;
+        }
+        return 0;
+    }
+
+    static String parseGpuVendor(String gpu) {
+        if (gpu.contains("nvidia") || gpu.contains("geforce") || gpu.contains("rtx") || gpu.contains("gtx")) return "nvidia";
+        if (gpu.contains("radeon") || gpu.contains("amd") || gpu.matches(".*\\brx\\s*\\d.*")) return "amd";
+        if (gpu.contains("intel") || gpu.contains("arc")) return "intel";
+        return null;
+    }
+
+    static String parseCpuVendor(String cpu) {
+        if (cpu.contains("intel") || cpu.contains("core i") || cpu.contains("core ultra")) return "intel";
+        if (cpu.contains("amd") || cpu.contains("ryzen") || cpu.contains("threadripper")) return "amd";
+        return null;
+    }
+
+    // Номер модели: первое число из 3–5 цифр, не являющееся объёмом, частотой или мощностью
+    static int parseModelNumber(String text) {
+        Matcher model = MODEL_NUMBER.matcher(text);
+        return model.find() ? parseIntSafe(model.group(1)) : 0;
+    }
+
+    static int parseCores(String cpu) {
+        Matcher cores = CORES.matcher(cpu);
+        return cores.find() ? parseIntSafe(cores.group(1)) : 0;
+    }
+
+    private static int toGigabytes(String amount, String unit) {
+        double value = Double.parseDouble(amount.replace(',', '.'));
+        boolean terabytes = unit.equals("tb") || unit.equals("тб");
+        return (int) Math.round(terabytes ? value * 1024 : value);
+    }
+
+    private static int firstNumber(String value) {
+        Matcher number = FIRST_NUMBER.matcher(value);
+        return number.find() ? parseIntSafe(number.group(1)) : 0;
+    }
+
+    private static int parseIntSafe(String digits) {
+        return digits.length() > 9 ? 0 : Integer.parseInt(digits);
+    }
+}
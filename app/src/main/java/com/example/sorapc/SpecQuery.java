@@ -0,0 +1,286 @@
+package com.example.sorapc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <summary>
+ * Класс SpecQuery разбирает язык запросов каталога и компилирует его в дерево условий.
+ * Поддерживаются условия по полям (gpu:4070, case="be quiet"), сравнения чисел (ram>=32, price<150000),
+ * слова без поля (ищутся во всех текстовых полях), И (пробел, AND, &amp;), ИЛИ (OR, |), НЕ (NOT, -, !) и скобки.
+ * Запрос разбирается один раз; при фильтрации дерево проверяется по готовым значениям SpecValueIndex.
+ * При ошибке разбора выбрасывается IllegalArgumentException с описанием для пользователя.
+ * </summary>
+ */
+
+public final class SpecQuery {
+
+    // Узел дерева условий; texts и numbers — значения полей товара по порядку QueryField
+    private interface Node {
+        boolean matches(String[] texts, long[] numbers);
+    }
+
+    private enum Operator {
+        CONTAINS(":"), EQUALS("="), NOT_EQUALS("!="), LESS("<"), LESS_OR_EQUAL("<="), GREATER(">"), GREATER_OR_EQUAL(">=");
+
+        final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+    }
+
+    private final Node root;
+
+    private SpecQuery(Node root) {
+        this.root = root;
+    }
+
+    public boolean matches(String[] texts, long[] numbers) {
+        return root.matches(texts, numbers);
+    }
+
+    // Похож ли текст на запрос с полями, а не на обычный поиск
+    public static boolean looksLikeQuery(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ':' || c == '<' || c == '>' || c == '=') return true;
+        }
+        return false;
+    }
+
+    public static SpecQuery parse(String text) {
+        Parser parser = new Parser(tokenize(text));
+        Node root = parser.parseOr();
+        if (!parser.atEnd()) {
+            throw new IllegalArgumentException("Лишний символ в запросе: " + parser.peek().text);
+        }
+        return new SpecQuery(root);
+    }
+
+    // ---- Лексер ----
+
+    private enum TokenType { WORD, QUOTED, OPERATOR, OPEN, CLOSE, AND, OR, NOT }
+
+    private static class Token {
+        final TokenType type;
+        final String text;
+
+        Token(TokenType type, String text) {
+            this.type = type;
+            this.text = text;
+        }
+    }
+
+    private static boolean isWordChar(char c) {
+        return !Character.isWhitespace(c) && "():<>=!\"|&".indexOf(c) < 0;
+    }
+
+    private static List<Token> tokenize(String text) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(') {
+                tokens.add(new Token(TokenType.OPEN, "("));
+                i++;
+            } else if (c == ')') {
+                tokens.add(new Token(TokenType.CLOSE, ")"));
+                i++;
+            } else if (c == '|') {
+                tokens.add(new Token(TokenType.OR, "|"));
+                i++;
+            } else if (c == '&') {
+                tokens.add(new Token(TokenType.AND, "&"));
+                i++;
+            } else if (c == '"') {
+                int end = text.indexOf('"', i + 1);
+                if (end < 0) throw new IllegalArgumentException("Не закрыта кавычка");
+                tokens.add(new Token(TokenType.QUOTED, text.substring(i + 1, end)));
+                i = end + 1;
+            } else if (c == ':' || c == '<' || c == '>' || c == '=' || c == '!') {
+                boolean twoChars = i + 1 < text.length() && text.charAt(i + 1) == '=' && c != ':' && c != '=';
+                String symbol = text.substring(i, i + (twoChars ? 2 : 1));
+                if (symbol.equals("!")) {
+                    tokens.add(new Token(TokenType.NOT, symbol));
+                } else {
+                    tokens.add(new Token(TokenType.OPERATOR, symbol));
+                }
+                i += symbol.length();
+            } else if (c == '-' && (tokens.isEmpty() || tokens.get(tokens.size() - 1).type != TokenType.OPERATOR)) {
+                // Минус перед словом — отрицание; после оператора он остаётся частью значения
+                tokens.add(new Token(TokenType.NOT, "-"));
+                i++;
+            } else {
+                int start = i;
+                while (i < text.length() && isWordChar(text.charAt(i))) i++;
+                String word = text.substring(start, i);
+                switch (word.toUpperCase()) {
+                    case "AND":
+                    case "И":
+                        tokens.add(new Token(TokenType.AND, word));
+                        break;
+                    case "OR":
+                    case "ИЛИ":
+                        tokens.add(new Token(TokenType.OR, word));
+                        break;
+                    case "NOT":
+                    case "НЕ":
+                        tokens.add(new Token(TokenType.NOT, word));
+                        break;
+                    default:
+                        tokens.add(new Token(TokenType.WORD, word));
+                }
+            }
+        }
+        return tokens;
+    }
+
+    // ---- Парсер (рекурсивный спуск) ----
+
+    private static class Parser {
+        private final List<Token> tokens;
+        private int position;
+
+        Parser(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        boolean atEnd() {
+            return position >= tokens.size();
+        }
+
+        Token peek() {
+            return tokens.get(position);
+        }
+
+        private boolean at(TokenType type) {
+            return !atEnd() && peek().type == type;
+        }
+
+        // or := and (OR and)*
+        Node parseOr() {
+            Node left = parseAnd();
+            while (at(TokenType.OR)) {
+                position++;
+                Node right = parseAnd();
+                Node l = left;
+                left = (texts, numbers) -> l.matches(texts, numbers) || right.matches(texts, numbers);
+            }
+            return left;
+        }
+
+        // and := unary ((AND)? unary)*
+        Node parseAnd() {
+            Node left = parseUnary();
+            while (!atEnd() && !at(TokenType.OR) && !at(TokenType.CLOSE)) {
+                if (at(TokenType.AND)) position++;
+                Node right = parseUnary();
+                Node l = left;
+                left = (texts, numbers) -> l.matches(texts, numbers) && right.matches(texts, numbers);
+            }
+            return left;
+        }
+
+        // unary := NOT unary | '(' or ')' | term
+        Node parseUnary() {
+            if (atEnd()) throw new IllegalArgumentException("Запрос оборвался");
+            if (at(TokenType.NOT)) {
+                position++;
+                Node operand = parseUnary();
+                return (texts, numbers) -> !operand.matches(texts, numbers);
+            }
+            if (at(TokenType.OPEN)) {
+                position++;
+                Node inner = parseOr();
+                if (!at(TokenType.CLOSE)) throw new IllegalArgumentException("Не закрыта скобка");
+                position++;
+                return inner;
+            }
+            return parseTerm();
+        }
+
+        // term := WORD | QUOTED | WORD operator value
+        Node parseTerm() {
+            Token token = tokens.get(position++);
+            if (token.type != TokenType.WORD && token.type != TokenType.QUOTED) {
+                throw new IllegalArgumentException("Неожиданный символ: " + token.text);
+            }
+            if (token.type == TokenType.QUOTED || !at(TokenType.OPERATOR)) {
+                return anyText(SearchIndex.normalize(token.text));
+            }
+
+            QueryField field = QueryField.byName(token.text);
+            if (field == null) throw new IllegalArgumentException("Неизвестное поле: " + token.text);
+            Operator operator = operatorOf(tokens.get(position++).text);
+            if (!at(TokenType.WORD) && !at(TokenType.QUOTED)) {
+                throw new IllegalArgumentException("Нет значения для поля " + token.text);
+            }
+            String value = tokens.get(position++).text;
+            return compare(field, operator, value);
+        }
+    }
+
+    private static Operator operatorOf(String symbol) {
+        for (Operator operator : Operator.values()) {
+            if (operator.symbol.equals(symbol)) return operator;
+        }
+        throw new IllegalArgumentException("Неизвестный оператор: " + symbol);
+    }
+
+    // ---- Компиляция условий ----
+
+    private static Node anyText(String needle) {
+        return (texts, numbers) -> {
+            for (String text : texts) {
+                if (text.contains(needle)) return true;
+            }
+            return false;
+        };
+    }
+
+    private static Node compare(QueryField field, Operator operator, String value) {
+        int column = field.ordinal();
+        if (field.isText() && (operator == Operator.CONTAINS || !isNumber(value))) {
+            String needle = SearchIndex.normalize(value);
+            switch (operator) {
+                case CONTAINS:
+                    return (texts, numbers) -> texts[column].contains(needle);
+                case EQUALS:
+                    return (texts, numbers) -> texts[column].equals(needle);
+                case NOT_EQUALS:
+                    return (texts, numbers) -> !texts[column].equals(needle);
+                default:
+                    throw new IllegalArgumentException("Поле " + field.name().toLowerCase() + " сравнивается только с числом");
+            }
+        }
+
+        if (!isNumber(value)) throw new IllegalArgumentException("Ожидалось число: " + value);
+        long number = Long.parseLong(value);
+        switch (operator) {
+            case CONTAINS:
+            case EQUALS:
+                return (texts, numbers) -> numbers[column] != SpecValueIndex.NO_NUMBER && numbers[column] == number;
+            case NOT_EQUALS:
+                return (texts, numbers) -> numbers[column] != number;
+            case LESS:
+                return (texts, numbers) -> numbers[column] != SpecValueIndex.NO_NUMBER && numbers[column] < number;
+            case LESS_OR_EQUAL:
+                return (texts, numbers) -> numbers[column] != SpecValueIndex.NO_NUMBER && numbers[column] <= number;
+            case GREATER:
+                return (texts, numbers) -> numbers[column] > number;
+            default:
+                return (texts, numbers) -> numbers[column] >= number;
+        }
+    }
+
+    private static boolean isNumber(String value) {
+        if (value.isEmpty() || value.length() > 18) return false;
+        for (int i = 0; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i))) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.sorapc;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * <summary>
+ * Класс SpecValueIndex хранит для каждого товара заранее подготовленные значения полей QueryField:
+ * нормализованный текст и число. Запрос SpecQuery проверяется по этим массивам,
+ * поэтому при фильтрации не разбираются строки товара и не используется отражение.
+ * Индекс обновляется репозиторием товаров, методы синхронизированы для чтения из фонового потока.
+ * </summary>
+ */
+
+public class SpecValueIndex implements ProductIndex {
+
+    // Значение поля без числа
+    public static final long NO_NUMBER = Long.MIN_VALUE;
+
+    private static final QueryField[] FIELDS = QueryField.values();
+
+    private final List<String[]> textsBySlot = new ArrayList<>();
+    private final List<long[]> numbersBySlot = new ArrayList<>();
+    private final BitSet liveSlots = new BitSet();
+
+    // Слоты товаров, для которых выполняется запрос
+    public synchronized BitSet select(SpecQuery query) {
+        BitSet result = new BitSet();
+        for (int slot = liveSlots.nextSetBit(0); slot >= 0; slot = liveSlots.nextSetBit(slot + 1)) {
+            if (query.matches(textsBySlot.get(slot), numbersBySlot.get(slot))) {
+                result.set(slot);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void onProductAdded(int slot, Product product) {
+        while (textsBySlot.size() <= slot) {
+            textsBySlot.add(null);
+            numbersBySlot.add(null);
+        }
+        String[] texts = new String[FIELDS.length];
+        long[] numbers = new long[FIELDS.length];
+        for (QueryField field : FIELDS) {
+            texts[field.ordinal()] = field.isText() ? SearchIndex.normalize(field.textOf(product)) : "";
+            if (!field.hasNumber()) {
+                numbers[field.ordinal()] = firstNumber(texts[field.ordinal()]);
+            } else if (field.isText() && field.numberOf(product) == 0) {
+                numbers[field.ordinal()] = NO_NUMBER; // Характеристику не удалось разобрать
+            } else {
+                numbers[field.ordinal()] = field.numberOf(product);
+            }
+        }
+        textsBySlot.set(slot, texts);
+        numbersBySlot.set(slot, numbers);
+        liveSlots.set(slot);
+    }
+
+    @Override
+    public synchronized void onProductModified(int slot, Product oldProduct, Product newProduct) {
+        onProductAdded(slot, newProduct);
+    }
+
+    @Override
+    public synchronized void onProductRemoved(int slot, Product product) {
+        if (slot >= textsBySlot.size()) return;
+        textsBySlot.set(slot, null);
+        numbersBySlot.set(slot, null);
+        liveSlots.clear(slot);
+    }
+
+    @Override
+    public synchronized void clear() {
+        textsBySlot.clear();
+        numbersBySlot.clear();
+        liveSlots.clear();
+    }
+
+    // Первое целое число в строке: "32 гб ddr5" -> 32
+    private static long firstNumber(String text) {
+        long value = 0;
+        boolean found = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                found = true;
+            } else if (found) {
+                break;
+            }
+        }
+        return found ? value : NO_NUMBER;
+    }
+}
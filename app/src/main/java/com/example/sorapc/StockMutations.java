@@ -0,0 +1,149 @@
+package com.example.sorapc;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <summary>
+ * Класс StockMutations добавляет в WriteBatch изменения остатка (quantity) и числа продаж (salesCount) товара.
+ * Поля меняются атомарными приращениями FieldValue.increment на сервере, поэтому запись не требует
+ * предварительного чтения документа и одновременные покупки одного товара не затирают друг друга.
+ * Проекция productSummaries получает те же приращения в том же пакете, но только через update():
+ * отсутствующая проекция не создаётся неполной, а пакет отклоняется с кодом NOT_FOUND,
+ * и вызывающий код может повторить его без проекции этого товара (findMissingSummaries).
+ * Покупатель может только списать остаток по заказу: продажа помечает товар полем lastOrder с идентификатором заказа,
+ * который создаётся тем же пакетом, и правила сверяют списание с его полем sold. Остальные изменения остатка доступны
+ * только администратору.
+ * Отрицательный остаток не пропускают правила Firestore (firestore.rules): такой пакет отклоняется целиком
+ * с кодом PERMISSION_DENIED. Тот же код возвращается и при других отказах правил, поэтому нехватку товара
+ * подтверждает findShortage, перечитав остатки.
+ * </summary>
+ */
+
+public final class StockMutations {
+
+    public static final String QUANTITY = "quantity";
+    public static final String SALES_COUNT = "salesCount";
+    public static final String LAST_ORDER = "lastOrder";
+
+    private StockMutations() {}
+
+    // Продажа по заказу orderId, создаваемому в том же пакете: остаток уменьшается, число продаж растёт на count
+    public static WriteBatch sell(WriteBatch batch, FirebaseFirestore db, String productId, int count, String orderId,
+                                  boolean withSummary) {
+        Map<String, Object> product = new HashMap<>();
+        Map<String, Object> summary = new HashMap<>();
+        product.put(LAST_ORDER, orderId);
+        summary.put(LAST_ORDER, orderId);
+        return update(batch, db, productId, product, summary, -count, count, withSummary);
+    }
+
+    // Возврат проданного товара на склад
+    public static WriteBatch giveBack(WriteBatch batch, FirebaseFirestore db, String productId, int count, boolean withSummary) {
+        return update(batch, db, productId, new HashMap<>(), new HashMap<>(), count, -count, withSummary);
+    }
+
+    // Поступление (delta > 0) или списание (delta < 0) без продажи
+    public static WriteBatch restock(WriteBatch batch, FirebaseFirestore db, String productId, int delta, boolean withSummary) {
+        return update(batch, db, productId, new HashMap<>(), new HashMap<>(), delta, 0, withSummary);
+    }
+
+    // Правка товара администратором: характеристики перезаписываются, а остаток меняется на разницу
+    // с остатком, который администратор видел, чтобы не затереть продажи, прошедшие за время правки
+    public static WriteBatch edit(WriteBatch batch, FirebaseFirestore db, String productId, Product product,
+                                  int seenQuantity, boolean withSummary) {
+        Map<String, Object> details = withoutStock(DocumentMappers.data(product));
+        Map<String, Object> summaryDetails = withoutStock(DocumentMappers.data(ProductSummary.of(product)));
+        return update(batch, db, productId, details, summaryDetails, product.getQuantity() - seenQuantity, 0, withSummary);
+    }
+
+    // Пакет отклонён правилами Firestore: нехватка товара или другой отказ в доступе
+    public static boolean isRejected(Exception e) {
+        return hasCode(e, FirebaseFirestoreException.Code.PERMISSION_DENIED);
+    }
+
+    // Обновляемого документа нет: товар удалён или его проекция ещё не собрана
+    public static boolean isMissingDocument(Exception e) {
+        return hasCode(e, FirebaseFirestoreException.Code.NOT_FOUND);
+    }
+
+    // Перечитывает остатки из Firestore после отклонённой записи; результат — артикул первого товара,
+    // которого меньше, чем нужно списать, или null, если нехватка не подтвердилась
+    public static Task<String> findShortage(Map<String, Integer> decrements) {
+        return ArticleLookup.getInstance().getAll(decrements.keySet(), 0).continueWith(read -> {
+            for (Map.Entry<String, DocumentSnapshot> entry : read.getResult().entrySet()) {
+                DocumentSnapshot document = entry.getValue();
+                if (document == null) continue;
+                Long quantity = document.getLong(QUANTITY);
+                if (quantity == null || quantity < decrements.get(entry.getKey())) {
+                    return entry.getKey();
+                }
+            }
+            return null;
+        });
+    }
+
+    // Артикулы, у которых нет проекции, — после отказа пакета с кодом NOT_FOUND
+    public static Task<Set<String>> findMissingSummaries(FirebaseFirestore db, Collection<String> productIds) {
+        List<String> ids = new ArrayList<>(productIds);
+        List<Task<DocumentSnapshot>> reads = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            reads.add(ProductSummary.reference(db, id).get());
+        }
+        return Tasks.whenAllSuccess(reads).continueWith(done -> {
+            Set<String> missing = new HashSet<>();
+            for (int i = 0; i < ids.size(); i++) {
+                if (!reads.get(i).getResult().exists()) {
+                    missing.add(ids.get(i));
+                }
+            }
+            return missing;
+        });
+    }
+
+    private static WriteBatch update(WriteBatch batch, FirebaseFirestore db, String productId,
+                                     Map<String, Object> product, Map<String, Object> summary,
+                                     long quantityDelta, long salesDelta, boolean withSummary) {
+        if (quantityDelta != 0) {
+            product.put(QUANTITY, FieldValue.increment(quantityDelta));
+            summary.put(QUANTITY, FieldValue.increment(quantityDelta));
+        }
+        if (salesDelta != 0) {
+            product.put(SALES_COUNT, FieldValue.increment(salesDelta));
+            summary.put(SALES_COUNT, FieldValue.increment(salesDelta));
+        }
+        if (product.isEmpty()) return batch;
+
+        ArticleLookup.getInstance().invalidate(productId);
+        ProductSummary.invalidateCompleteness();
+        // update не создаёт удалённый товар заново и не создаёт неполную проекцию
+        batch.update(db.collection("products").document(productId), product);
+        if (withSummary) {
+            batch.update(ProductSummary.reference(db, productId), summary);
+        }
+        return batch;
+    }
+
+    private static Map<String, Object> withoutStock(Map<String, Object> data) {
+        data.remove(QUANTITY);
+        data.remove(SALES_COUNT);
+        return data;
+    }
+
+    private static boolean hasCode(Exception e, FirebaseFirestoreException.Code code) {
+        return e instanceof FirebaseFirestoreException && ((FirebaseFirestoreException) e).getCode() == code;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.sorapc;
+
+import android.content.Context;
+import android.widget.ArrayAdapter;
+import android.widget.Filter;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <summary>
+ * Класс SuggestionAdapter поставляет подсказки для поля поиска каталога (AutoCompleteTextView).
+ * Фильтр выполняется в фоновом потоке виджета и берёт лучшие продолжения из SuggestionIndex,
+ * не просматривая список товаров.
+ * </summary>
+ */
+
+public class SuggestionAdapter extends ArrayAdapter<String> {
+
+    private static final int MAX_SUGGESTIONS = 8;
+
+    private final SuggestionIndex suggestionIndex;
+    private final Filter filter = new Filter() {
+        @Override
+        protected FilterResults performFiltering(CharSequence constraint) {
+            FilterResults results = new FilterResults();
+            List<String> suggestions = constraint != null
+                    ? suggestionIndex.suggest(constraint.toString(), MAX_SUGGESTIONS)
+                    : new ArrayList<>();
+            results.values = suggestions;
+            results.count = suggestions.size();
+            return results;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void publishResults(CharSequence constraint, FilterResults results) {
+            setNotifyOnChange(false);
+            clear();
+            if (results.values != null) {
+                addAll((List<String>) results.values);
+            }
+            notifyDataSetChanged();
+        }
+    };
+
+    public SuggestionAdapter(Context context, SuggestionIndex suggestionIndex) {
+        super(context, R.layout.item_suggestion, new ArrayList<>());
+        this.suggestionIndex = suggestionIndex;
+    }
+
+    @NonNull
+    @Override
+    public Filter getFilter() {
+        return filter;
+    }
+}
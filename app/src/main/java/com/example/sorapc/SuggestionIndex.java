@@ -0,0 +1,136 @@
+package com.example.sorapc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <summary>
+ * Класс SuggestionIndex строит подсказки для поля поиска каталога.
+ * Фразами служат названия и артикулы товаров, значения характеристик и названия категорий;
+ * вес фразы — сумма (1 + salesCount) товаров, в которых она встречается, поэтому популярные сборки предлагаются первыми.
+ * Фраза кладётся в PrefixTrie с начала каждого слова, чтобы "4070" находило "GeForce RTX 4070".
+ * При изменении товара вычитается его прежний вклад и добавляется новый, дерево целиком не перестраивается.
+ * Индекс обновляется репозиторием товаров, методы синхронизированы для чтения из фонового потока.
+ * </summary>
+ */
+
+public class SuggestionIndex implements ProductIndex {
+
+    // Вклад товара в дерево: фразы и вес, с которым они были добавлены
+    private static class Contribution {
+        final Set<String> phrases;
+        final long weight;
+
+        Contribution(Set<String> phrases, long weight) {
+            this.phrases = phrases;
+            this.weight = weight;
+        }
+    }
+
+    private static final char SEPARATOR = '\u0000';
+
+    private final PrefixTrie trie = new PrefixTrie();
+    private final Map<Integer, Contribution> contributions = new HashMap<>();
+    private final Map<Integer, Product> productsBySlot = new HashMap<>();
+    private Map<String, String> categoryTitles = new HashMap<>(); // Идентификатор категории -> название
+
+    // Лучшие limit подсказок для введённого текста
+    public synchronized List<String> suggest(String query, int limit) {
+        List<String> result = new ArrayList<>();
+        String prefix = SearchIndex.normalize(query);
+        if (prefix.isEmpty()) return result;
+        trie.top(prefix, limit, new HashSet<>(), result);
+        return result;
+    }
+
+    // Названия категорий известны только экрану каталога; вклад всех товаров пересчитывается с новыми названиями
+    public synchronized void setCategoryTitles(Map<String, String> titlesById) {
+        if (titlesById.equals(categoryTitles)) return;
+        for (Contribution contribution : contributions.values()) {
+            apply(contribution, -1);
+        }
+        categoryTitles = new HashMap<>(titlesById);
+        contributions.clear();
+        for (Map.Entry<Integer, Product> entry : productsBySlot.entrySet()) {
+            Contribution contribution = contributionOf(entry.getValue());
+            contributions.put(entry.getKey(), contribution);
+            apply(contribution, 1);
+        }
+    }
+
+    @Override
+    public synchronized void onProductAdded(int slot, Product product) {
+        productsBySlot.put(slot, product);
+        Contribution contribution = contributionOf(product);
+        contributions.put(slot, contribution);
+        apply(contribution, 1);
+    }
+
+    @Override
+    public synchronized void onProductModified(int slot, Product oldProduct, Product newProduct) {
+        Contribution old = contributions.get(slot);
+        Contribution updated = contributionOf(newProduct);
+        if (old != null && old.weight == updated.weight && old.phrases.equals(updated.phrases)) {
+            productsBySlot.put(slot, newProduct);
+            return; // Изменились поля, которые не влияют на подсказки
+        }
+        onProductRemoved(slot, oldProduct);
+        onProductAdded(slot, newProduct);
+    }
+
+    @Override
+    public synchronized void onProductRemoved(int slot, Product product) {
+        Contribution contribution = contributions.remove(slot);
+        productsBySlot.remove(slot);
+        if (contribution != null) {
+            apply(contribution, -1);
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        trie.clear();
+        contributions.clear();
+        productsBySlot.clear();
+    }
+
+    private Contribution contributionOf(Product product) {
+        return new Contribution(phrasesOf(product), 1 + Math.max(0, product.getSalesCount()));
+    }
+
+    private Set<String> phrasesOf(Product product) {
+        Set<String> phrases = new LinkedHashSet<>();
+        addPhrase(phrases, product.getTitle());
+        addPhrase(phrases, product.getArticle());
+        for (SpecField field : SpecField.values()) {
+            addPhrase(phrases, field.valueOf(product));
+        }
+        addPhrase(phrases, categoryTitles.get(product.getCategory()));
+        return phrases;
+    }
+
+    private static void addPhrase(Set<String> phrases, String phrase) {
+        if (phrase != null && !phrase.trim().isEmpty()) {
+            phrases.add(phrase.trim());
+        }
+    }
+
+    private void apply(Contribution contribution, int sign) {
+        for (String phrase : contribution.phrases) {
+            String key = SearchIndex.normalize(phrase);
+            trie.add(key, phrase, sign * contribution.weight);
+            // Фраза доступна и с начала остальных слов; после разделителя дописывается вся фраза,
+            // чтобы "RTX 4070" из названия и из видеокарты оставались разными подсказками
+            for (int start = 1; start < key.length(); start++) {
+                if (key.charAt(start - 1) == ' ') {
+                    trie.add(key.substring(start) + SEPARATOR + key, phrase, sign * contribution.weight);
+                }
+            }
+        }
+    }
+}
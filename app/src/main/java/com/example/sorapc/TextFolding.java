@@ -0,0 +1,61 @@
+package com.example.sorapc;
+
+/**
+ * <summary>
+ * Класс TextFolding приводит текст к общему виду для нечёткого поиска.
+ * Кириллица транслитерируется в латиницу (ртх -> rtx, ё и е совпадают), регистр, пробелы и знаки отбрасываются,
+ * поэтому "РТХ 4070", "rtx4070" и "RTX-4070" дают одну и ту же строку.
+ * Отдельно умеет переключать раскладку клавиатуры для запросов, набранных не в той раскладке (кеч -> rtx).
+ * </summary>
+ */
+
+public final class TextFolding {
+
+    private static final String LATIN_KEYS = "qwertyuiop[]asdfghjkl;'zxcvbnm,.`";
+    private static final String CYRILLIC_KEYS = "йцукенгшщзхъфывапролджэячсмитьбюё";
+    private static final String CYRILLIC = "абвгдеёжзийклмнопрстуфхцчшщъыьэюя";
+    private static final String[] CYRILLIC_TO_LATIN = {
+            "a", "b", "v", "g", "d", "e", "e", "zh", "z", "i", "i", "k", "l", "m", "n", "o", "p",
+            "r", "s", "t", "u", "f", "x", "c", "ch", "sh", "sch", "", "y", "", "e", "yu", "ya"
+    };
+
+    private TextFolding() {
+    }
+
+    // Нижний регистр, транслитерация кириллицы, только латинские буквы и цифры
+    public static String fold(String text) {
+        if (text == null) return "";
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                builder.append(c);
+                continue;
+            }
+            int cyrillic = CYRILLIC.indexOf(c);
+            if (cyrillic >= 0) {
+                builder.append(CYRILLIC_TO_LATIN[cyrillic]);
+            }
+        }
+        return builder.toString();
+    }
+
+    // Заменяет каждый символ на символ той же клавиши в другой раскладке (ЙЦУКЕН <-> QWERTY)
+    public static String switchLayout(String text) {
+        if (text == null) return "";
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int latin = LATIN_KEYS.indexOf(c);
+            int cyrillic = CYRILLIC_KEYS.indexOf(c);
+            if (latin >= 0) {
+                builder.append(CYRILLIC_KEYS.charAt(latin));
+            } else if (cyrillic >= 0) {
+                builder.append(LATIN_KEYS.charAt(cyrillic));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+}
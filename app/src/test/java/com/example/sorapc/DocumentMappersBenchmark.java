@@ -0,0 +1,72 @@
+package com.example.sorapc;
+
+import com.google.firebase.firestore.util.CustomClassMapper;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Микробенчмарк разбора документа товара: отражательный toObject() (CustomClassMapper) против DocumentMappers.
+ * Печатает среднее время разбора одного документа. Результат зависит от машины, поэтому в обычный прогон
+ * ./gradlew test замер не входит: его запускают вручную, сняв @Ignore. Совпадение результатов разбора
+ * проверяет DocumentMappersTest. Замер грубый (без JMH): прогрев, затем несколько раундов, берётся лучший.
+ */
+public class DocumentMappersBenchmark {
+
+    private static final int DOCUMENTS = 2_000;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 10;
+
+    // Результат разбора, чтобы JIT не выбросил работу
+    private static long sink;
+
+    @Test
+    @Ignore("Замер производительности, запускается вручную")
+    public void productDecodeCost() {
+        List<Map<String, Object>> documents = new ArrayList<>(DOCUMENTS);
+        for (int i = 0; i < DOCUMENTS; i++) {
+            Product product = new Product("SR-" + i, "Lian Li O11", "Deepcool LS720", "AMD Ryzen 7 7800X3D, 8 ядер",
+                    "Игровой компьютер №" + i, "GeForce RTX 4070 Super", "https://example.com/" + i + ".png", "B650",
+                    "750W Gold", 100_000 + i, "32 GB DDR5", "1 ТБ NVMe", "SORAPC " + i, false, "gaming", i % 10, i);
+            SpecNormalizer.normalize(product);
+            documents.add(DocumentMappersTest.storedData(product));
+        }
+
+        double reflective = measure(documents, data -> CustomClassMapper.convertToCustomClass(data, Product.class, null));
+        double direct = measure(documents, DocumentMappers::product);
+
+        System.out.printf("Разбор товара: toObject() %.0f нс/док, DocumentMappers %.0f нс/док, ускорение x%.1f%n",
+                reflective, direct, reflective / direct);
+        assertTrue(sink != 0);
+    }
+
+    private interface Decoder {
+        Product decode(Map<String, Object> data);
+    }
+
+    // Лучшее среднее время разбора одного документа за раунд, нс
+    private static double measure(List<Map<String, Object>> documents, Decoder decoder) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            decodeAll(documents, decoder);
+        }
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            decodeAll(documents, decoder);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return (double) best / documents.size();
+    }
+
+    private static void decodeAll(List<Map<String, Object>> documents, Decoder decoder) {
+        for (Map<String, Object> data : documents) {
+            sink += decoder.decode(data).getPrice();
+        }
+    }
+}
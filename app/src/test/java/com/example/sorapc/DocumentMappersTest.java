@@ -0,0 +1,199 @@
+package com.example.sorapc;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.util.CustomClassMapper;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Проверяет, что DocumentMappers разбирает документы так же, как отражательный toObject() Firestore.
+ * Модель сериализуется через CustomClassMapper, приводится к виду, в котором значения возвращает getData()
+ * (Long, Double, Timestamp), и разбирается обоими способами; результаты сравниваются в сериализованном виде.
+ * Обратное преобразование data() сравнивается с сериализацией, которую выполняет set() с моделью.
+ */
+public class DocumentMappersTest {
+
+    private static final Date DATE = new Date(1_717_000_000_000L);
+
+    @Test
+    public void product_roundTrip() {
+        assertParity(fullProduct(), Product.class, DocumentMappers::product);
+    }
+
+    @Test
+    public void productSummary_roundTrip() {
+        assertParity(ProductSummary.of(fullProduct()), ProductSummary.class, DocumentMappers::productSummary);
+    }
+
+    @Test
+    public void productData_matchesSetSerialization() {
+        Product product = fullProduct();
+        assertEquals(CustomClassMapper.convertToPlainJavaTypes(product), DocumentMappers.data(product));
+    }
+
+    @Test
+    public void productSummaryData_matchesSetSerialization() {
+        ProductSummary summary = ProductSummary.of(fullProduct());
+        assertEquals(CustomClassMapper.convertToPlainJavaTypes(summary), DocumentMappers.data(summary));
+    }
+
+    @Test
+    public void order_roundTrip() {
+        Product second = fullProduct();
+        second.setArticle("SR-0002");
+        second.setQuantity(2);
+        Order order = new Order(Arrays.asList(fullProduct(), second), 389970, 3900, 393870, DATE,
+                Arrays.asList("SR-0001", "SR-0002"));
+        assertParity(order, Order.class, DocumentMappers::order);
+    }
+
+    @Test
+    public void review_roundTrip() {
+        Review review = new Review("uid-1", "Иван", "Отличный ПК", 4.5f, DATE);
+        review.setReviewId("r-1");
+        review.setProductId("SR-0001");
+        review.setProductName("SORAPC DYNAMIC");
+        assertParity(review, Review.class, DocumentMappers::review);
+    }
+
+    @Test
+    public void user_roundTrip() {
+        User user = new User();
+        user.setId("uid-1");
+        user.setSurname("Иванов");
+        user.setName("Иван");
+        user.setMiddlename("Иванович");
+        user.setEmail("ivan@example.com");
+        user.setPhone("+79990000000");
+        user.setRole("Клиент");
+        assertParity(user, User.class, DocumentMappers::user);
+    }
+
+    @Test
+    public void card_roundTrip() {
+        Card card = new Card("4111111111111111", "12/27", "123");
+        card.setCardId("c-1");
+        assertParity(card, Card.class, DocumentMappers::card);
+    }
+
+    @Test
+    public void category_roundTrip() {
+        Category category = new Category("Игровые ПК");
+        category.setId("gaming");
+        assertParity(category, Category.class, DocumentMappers::category);
+    }
+
+    @Test
+    public void emptyDocument_givesDefaults() {
+        assertDataParity(new HashMap<>(), Product.class, DocumentMappers::product);
+        assertDataParity(new HashMap<>(), Order.class, DocumentMappers::order);
+        assertDataParity(new HashMap<>(), Review.class, DocumentMappers::review);
+    }
+
+    @Test
+    public void missingDocument_givesNull() {
+        assertNull(DocumentMappers.product((Map<String, Object>) null));
+        assertNull(CustomClassMapper.convertToCustomClass(null, Product.class, null));
+    }
+
+    @Test
+    public void numbers_areCoercedLikeToObject() {
+        // Значения, записанные из консоли или другим клиентом, приходят не тем числовым типом
+        Map<String, Object> product = new HashMap<>();
+        product.put("price", 129990.0);
+        product.put("quantity", 7L);
+        product.put("salesCount", 12.9);
+        product.put("ramGb", 32.0);
+        assertDataParity(product, Product.class, DocumentMappers::product);
+
+        Map<String, Object> review = new HashMap<>();
+        review.put("rating", 5L);
+        review.put("date", DATE);
+        assertDataParity(review, Review.class, DocumentMappers::review);
+    }
+
+    @Test
+    public void typeMismatch_failsLikeToObject() {
+        assertBothFail("title", 42L);
+        assertBothFail("price", "дорого");
+        assertBothFail("quantity", 1e12);
+        assertBothFail("favorite", "да");
+    }
+
+    // ---- Вспомогательные методы ----
+
+    private static Product fullProduct() {
+        Product product = new Product("SR-0001", "Lian Li O11", "Deepcool LS720", "AMD Ryzen 7 7800X3D, 8 ядер",
+                "Игровой компьютер", "GeForce RTX 4070 Super", "https://example.com/1.png", "B650",
+                "750W Gold", 129990, "32 GB DDR5", "1 ТБ NVMe", "SORAPC DYNAMIC", true, "gaming", 5, 17);
+        SpecNormalizer.normalize(product);
+        return product;
+    }
+
+    private static <T> void assertParity(T model, Class<T> type, Function<Map<String, Object>, T> mapper) {
+        assertDataParity(storedData(model), type, mapper);
+    }
+
+    private static <T> void assertDataParity(Map<String, Object> data, Class<T> type, Function<Map<String, Object>, T> mapper) {
+        T reflective = CustomClassMapper.convertToCustomClass(data, type, null);
+        T direct = mapper.apply(data);
+        assertEquals(CustomClassMapper.convertToPlainJavaTypes(reflective), CustomClassMapper.convertToPlainJavaTypes(direct));
+    }
+
+    private static void assertBothFail(String field, Object value) {
+        Map<String, Object> data = storedData(fullProduct());
+        data.put(field, value);
+        try {
+            CustomClassMapper.convertToCustomClass(data, Product.class, null);
+            fail("toObject() принял " + field + " = " + value);
+        } catch (RuntimeException expected) {
+            // Ожидаемая ошибка отражательного пути
+        }
+        try {
+            DocumentMappers.product(data);
+            fail("DocumentMappers принял " + field + " = " + value);
+        } catch (IllegalArgumentException expected) {
+            // Ожидаемая ошибка прямого разбора
+        }
+    }
+
+    // Модель в том виде, в котором её вернёт DocumentSnapshot.getData() после записи
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> storedData(Object model) {
+        return (Map<String, Object>) asStored(CustomClassMapper.convertToPlainJavaTypes(model));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object asStored(Object value) {
+        if (value instanceof Integer) return ((Integer) value).longValue();
+        if (value instanceof Float) return ((Float) value).doubleValue();
+        if (value instanceof Date) return new Timestamp((Date) value);
+        if (value instanceof List) {
+            List<Object> result = new ArrayList<>();
+            for (Object item : (List<Object>) value) {
+                result.add(asStored(item));
+            }
+            return result;
+        }
+        if (value instanceof Map) {
+            Map<String, Object> result = new HashMap<>();
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+                result.put(entry.getKey(), asStored(entry.getValue()));
+            }
+            return result;
+        }
+        return value;
+    }
+}